@@ -97,6 +97,7 @@ public class Configuration {
     private CompilerInfo defaultXsltCompilerInfo = new CompilerInfo();
     private DocumentPool sourceDocumentPool = new DocumentPool();
     private Logger logger = Logger.getLogger("Configuration");
+    private HTMLDocumentWrapper hostPage = null;
 
 
 
@@ -160,8 +161,19 @@ public class Configuration {
     public DocumentInfo getHostPage(){
     	// attempt to initialise this only once - in the Configuration constructor led
     	// to NamePool exception
+        if (hostPage != null) {
+            HTMLDocumentWrapper.checkMutations();
+            return hostPage;
+        }
         Document page = Document.get();
-        return new HTMLDocumentWrapper(page, page.getURL(), this, DocType.UNKNOWN);
+        HTMLDocumentWrapper wrapper = new HTMLDocumentWrapper(page, page.getURL(), this, DocType.UNKNOWN);
+        wrapper.setWrapperCaching(true);
+        // the wrapper (and its cached node wrappers) can only be retained across calls if
+        // changes made to the page by other scripts will be notified
+        if (HTMLDocumentWrapper.observeMutations(page)) {
+            hostPage = wrapper;
+        }
+        return wrapper;
     }
 
     /**
@@ -322,6 +334,29 @@ public class Configuration {
         defaultXsltCompilerInfo.setVersionWarning(warn);
     }
 
+    /**
+     * Determine whether the bodies of templates are compiled when they are first invoked, rather than
+     * when the stylesheet is compiled
+     *
+     * @return true if templates are compiled on first use
+     */
+
+    public boolean isLazyTemplateCompilation() {
+        return defaultXsltCompilerInfo.isLazyTemplateCompilation();
+    }
+
+    /**
+     * Say whether the bodies of templates are to be compiled when they are first invoked, rather than
+     * when the stylesheet is compiled. This reduces the start-up time for a large stylesheet of which
+     * only a small part is used in any one transformation.
+     *
+     * @param lazy true if templates are to be compiled on first use
+     */
+
+    public void setLazyTemplateCompilation(boolean lazy) {
+        defaultXsltCompilerInfo.setLazyTemplateCompilation(lazy);
+    }
+
     /**
      * Determine whether calls to external Java functions are permitted.
      *
@@ -620,7 +655,9 @@ public class Configuration {
         } catch (Exception ec) {
         	throw new XPathException("XML parser error: " + ec.getMessage());
         }
-        return new HTMLDocumentWrapper(jsDoc, url, Configuration.this, DocType.NONHTML);
+        HTMLDocumentWrapper wrapper = new HTMLDocumentWrapper(jsDoc, url, Configuration.this, DocType.NONHTML);
+        wrapper.setOwnsDOM(true);
+        return wrapper;
     }
     
    
@@ -761,6 +798,9 @@ public class Configuration {
         } else if (name.equals(FeatureKeys.VERSION_WARNING)) {
             setVersionWarning(requireBoolean(name, value));
 
+        } else if (name.equals(FeatureKeys.LAZY_TEMPLATE_COMPILATION)) {
+            setLazyTemplateCompilation(requireBoolean(name, value));
+
         } else if (name.equals(FeatureKeys.XSLT_INITIAL_MODE)) {
             String s = requireString(name, value);
             getDefaultXsltCompilerInfo().setDefaultInitialMode(StructuredQName.fromClarkName(s));
@@ -867,6 +907,9 @@ public class Configuration {
         } else if (name.equals(FeatureKeys.VERSION_WARNING)) {
             return Boolean.valueOf(isVersionWarning());
 
+        } else if (name.equals(FeatureKeys.LAZY_TEMPLATE_COMPILATION)) {
+            return Boolean.valueOf(isLazyTemplateCompilation());
+
         } else if (name.equals(FeatureKeys.XSLT_INITIAL_MODE)) {
             return getDefaultXsltCompilerInfo().getDefaultInitialMode().getClarkName();
 
@@ -1,8 +1,10 @@
 package client.net.sf.saxon.ce;
 
+import client.net.sf.saxon.ce.dom.HTMLDocumentWrapper;
 import client.net.sf.saxon.ce.dom.HTMLDocumentWrapper.DocType;
 import client.net.sf.saxon.ce.dom.HTMLWriter;
 import client.net.sf.saxon.ce.event.*;
+import client.net.sf.saxon.ce.expr.StackFramePool;
 import client.net.sf.saxon.ce.expr.XPathContext;
 import client.net.sf.saxon.ce.expr.XPathContextMajor;
 import client.net.sf.saxon.ce.expr.instruct.*;
@@ -17,6 +19,7 @@ import client.net.sf.saxon.ce.om.*;
 import client.net.sf.saxon.ce.trans.CompilerInfo;
 import client.net.sf.saxon.ce.trans.Mode;
 import client.net.sf.saxon.ce.trans.RuleManager;
+import client.net.sf.saxon.ce.trans.StripSpaceRules;
 import client.net.sf.saxon.ce.trans.XPathException;
 import client.net.sf.saxon.ce.trans.update.PendingUpdateList;
 import client.net.sf.saxon.ce.tree.iter.SingletonIterator;
@@ -33,8 +36,10 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.logging.Logger;
 
 /**
  * The Controller is equivalent to Saxon-HE's implementation of the same name, and represents
@@ -82,6 +87,7 @@ public class Controller {
     private HashSet<DocumentURI> allOutputDestinations;
     private HashMap<DocumentURI, Node> resultDocumentPool;
     private SequenceOutputter reusableSequenceOutputter = null;
+    private StackFramePool stackFramePool = new StackFramePool();
     private HashMap<String, Object> userDataTable = new HashMap<String, Object>(20);
     private DateTimeValue currentDateTime;
     private boolean dateTimePreset = false;
@@ -100,6 +106,9 @@ public class Controller {
     private static ArrayList<Xslt20ProcessorImpl> nonDomEventProcessors= null;
     private HTMLWriter openHTMLWriter = null;
     private Node principalOutputNode = null;
+    private boolean incrementalUpdate = false;
+    private List<ResultRegion> resultRegions = null;
+    private boolean reapplyingResultRegions = false;
     private NodeInfo sourceNode = null;
 
     /**
@@ -229,6 +238,7 @@ public class Controller {
         commandType = APIcommand.NONE;
         resultDocumentPool = null;
         openHTMLWriter = null;
+        incrementalUpdate = false;
     }
     
     public void importControllerSettings(Controller lc) throws XPathException {
@@ -240,6 +250,7 @@ public class Controller {
     	this.setTargetNode(lc.getTargetNode());
     	this.setApiCommand(lc.getApiCommand());
     	this.setSourceNode(lc.getSourceNode());
+    	this.setIncrementalUpdate(lc.isIncrementalUpdate());
     }
 
     /**
@@ -257,6 +268,7 @@ public class Controller {
         lastRememberedNode = null;
         lastRememberedNumber = -1;
         openHTMLWriter = null;
+        resultRegions = null;
     }
 
     /**
@@ -293,6 +305,83 @@ public class Controller {
     public APIcommand getApiCommand() {
     	return commandType;
     }
+
+    /**
+     * Request incremental update of the HTML page. When this is set, a result document written with
+     * method ixsl:replace-content is applied as if the method were ixsl:patch-content: the new content is
+     * compared with the existing content of the target element, and only the nodes that differ are
+     * changed. In addition, each evaluation of xsl:result-document that updates the page is recorded,
+     * so that when the source document changes, {@link #reapplyResultRegions} can evaluate again only
+     * those instructions whose context node contains a changed node.
+     * @param incremental true if result documents are to be patched into the page
+     */
+
+    public void setIncrementalUpdate(boolean incremental) {
+        incrementalUpdate = incremental;
+    }
+
+    /**
+     * Ask whether incremental update of the HTML page has been requested
+     * @return true if result documents written with method ixsl:replace-content are patched into the page
+     */
+
+    public boolean isIncrementalUpdate() {
+        return incrementalUpdate;
+    }
+
+    /**
+     * Record an evaluation of an xsl:result-document instruction that patches the HTML page, so that
+     * it can be evaluated again if the source document changes. This is called only when incremental
+     * update has been requested, and not for instructions that append content to the page.
+     * @param instruction the xsl:result-document instruction
+     * @param context the dynamic context in which it is being evaluated
+     */
+
+    public void addResultRegion(ResultDocument instruction, XPathContext context) {
+        if (reapplyingResultRegions) {
+            // the region being evaluated again already covers this one
+            return;
+        }
+        ResultRegion region = ResultRegion.make(instruction, context);
+        if (region != null) {
+            if (resultRegions == null) {
+                resultRegions = new ArrayList<ResultRegion>();
+            }
+            resultRegions.add(region);
+        }
+    }
+
+    /**
+     * Following changes to the source document, evaluate again each xsl:result-document instruction
+     * recorded during the last transformation whose context node is, or is an ancestor of, one of the
+     * changed nodes, and patch the results into the page.
+     * @param changedNodes the source nodes that have changed. A node whose content or attributes have changed
+     * should be reported, as should the parent of a node that has been inserted or deleted.
+     * @return the number of xsl:result-document instructions evaluated
+     * @throws XPathException if a dynamic error occurs
+     */
+
+    public int reapplyResultRegions(List<NodeInfo> changedNodes) throws XPathException {
+        if (resultRegions == null) {
+            return 0;
+        }
+        int count = 0;
+        pendingUpdateList = new PendingUpdateList(config);
+        reapplyingResultRegions = true;
+        try {
+            for (ResultRegion region : resultRegions) {
+                if (region.isAffectedBy(changedNodes)) {
+                    region.reapply();
+                    count++;
+                }
+            }
+            pendingUpdateList.apply(newXPathContext());
+        } finally {
+            reapplyingResultRegions = false;
+            executable.getKeyManager().releaseDocumentIndexes();
+        }
+        return count;
+    }
         
     /**
      * Set the initial mode for the transformation.
@@ -587,6 +676,15 @@ public class Controller {
         reusableSequenceOutputter = out;
     }
 
+    /**
+     * Get the pool of arrays used to hold the local variables of templates and functions
+     * @return the stack frame pool
+     */
+
+    public StackFramePool getStackFramePool() {
+        return stackFramePool;
+    }
+
     /**
      * Get the pending update list
      * @return the pending update list
@@ -920,6 +1018,30 @@ public class Controller {
         return stripSourceTrees;
     }
 
+    /**
+     * Apply the whitespace stripping rules defined by xsl:strip-space and xsl:preserve-space to a
+     * source document. Where Saxon owns the DOM underlying the document (that is, where it was parsed by
+     * Saxon from the result of an HTTP request), the whitespace text nodes are removed from the DOM
+     * once, so that the transformation navigates the stripped tree directly. Documents supplied by the
+     * application, and the HTML page, are left unchanged.
+     * @param doc the source document
+     * @throws XPathException if the stripping rules are ambiguous
+     */
+
+    public void prepareInputTree(DocumentInfo doc) throws XPathException {
+        StripSpaceRules rules = executable.getStripperRules();
+        if (rules == null || !stripSourceTrees) {
+            return;
+        }
+        if (doc instanceof HTMLDocumentWrapper && ((HTMLDocumentWrapper)doc).ownsDOM()) {
+            HTMLDocumentWrapper wrapper = (HTMLDocumentWrapper)doc;
+            if (!wrapper.stripWhitespace(new RuleBasedStripper(rules), rules)) {
+                Logger.getLogger("Controller").warning("Whitespace in " + doc.getBaseURI() +
+                        " has already been stripped using the rules of a different stylesheet");
+            }
+        }
+    }
+
     /**
      * Add a document to the document pool, and check that it is suitable for use in this query or
      * transformation. This check rejects the document if document has been validated (and thus carries
@@ -1126,6 +1248,7 @@ public class Controller {
         	LogController.openTraceListener();
         }
         boolean success = false;
+        stackFramePool.resetCounters();
 
         try {
             if (source == null) {
@@ -1145,6 +1268,9 @@ public class Controller {
                 if (source.getSystemId() != null) {
                     registerDocument(source.getDocumentRoot(), new DocumentURI(source.getSystemId()));
                 }
+                if (source.getDocumentRoot() != null) {
+                    prepareInputTree(source.getDocumentRoot());
+                }
             }
             // System.err.println("*** TransformDocument");
             if (executable==null) {
@@ -1218,9 +1344,12 @@ public class Controller {
         } finally {
             inUse = false;
             principalResultURI = null;
+            executable.getKeyManager().releaseDocumentIndexes();
             
             if (LogConfiguration.loggingIsEnabled()) {
             	LogController.closeTraceListener(success);
+            	Logger.getLogger("Controller").fine("Stack frames allocated: " +
+            	        stackFramePool.getAllocationCount() + ", reused: " + stackFramePool.getReuseCount());
             }
         }
     }
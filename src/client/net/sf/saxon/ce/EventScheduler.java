@@ -0,0 +1,182 @@
+package client.net.sf.saxon.ce;
+
+import client.net.sf.saxon.ce.om.NodeInfo;
+import client.net.sf.saxon.ce.tree.wrapper.VirtualNode;
+import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.user.client.Timer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Schedules the template rules that handle browser events, for templates whose ixsl:event-policy
+ * attribute asks for events to be coalesced. Consecutive events of the same type for the same element
+ * are merged, so that the template runs once, with the most recent event, either at the next animation
+ * frame or after a debounce interval in which no further event occurs. This means that the work done
+ * for high-frequency events such as mousemove or scroll follows the frame rate rather than the rate at
+ * which the browser raises events.
+ */
+
+public class EventScheduler {
+
+    private Xslt20ProcessorImpl processor;
+    private List<PendingEvent> frameQueue = new ArrayList<PendingEvent>();
+    private HashMap<List<Object>, PendingEvent> pending = new HashMap<List<Object>, PendingEvent>();
+    private boolean frameRequested = false;
+    private int executed = 0;
+    private int coalesced = 0;
+    private int dropped = 0;
+    private static Logger logger = Logger.getLogger("EventScheduler");
+
+    /**
+     * Create an event scheduler
+     * @param processor the processor whose templates are to be run
+     */
+
+    public EventScheduler(Xslt20ProcessorImpl processor) {
+        this.processor = processor;
+    }
+
+    /**
+     * Schedule the template rules for an event
+     * @param delay zero to run the templates at the next animation frame, or a positive
+     * number of milliseconds to wait for further events before running the templates
+     * @param mode the Clark name of the mode
+     * @param element the element matched by the template rule
+     * @param event the browser event
+     */
+
+    public void schedule(int delay, String mode, NodeInfo element, JavaScriptObject event) {
+        Object node = (element instanceof VirtualNode ? ((VirtualNode)element).getRealNode() : element);
+        List<Object> key = new ArrayList<Object>(2);
+        key.add(mode);
+        key.add(node);
+        PendingEvent pe = pending.get(key);
+        if (pe != null) {
+            // replace the earlier event, which will now not be handled
+            coalesced++;
+            pe.event = event;
+            if (delay > 0) {
+                pe.cancel();
+                pe.schedule(delay);
+            }
+            return;
+        }
+        pe = new PendingEvent(key, mode, element, event);
+        pending.put(key, pe);
+        if (delay > 0) {
+            pe.schedule(delay);
+        } else {
+            frameQueue.add(pe);
+            if (!frameRequested) {
+                frameRequested = true;
+                requestFrame();
+            }
+        }
+    }
+
+    private native void requestFrame() /*-{
+        var self = this;
+        var callback = $entry(function() {
+            self.@client.net.sf.saxon.ce.EventScheduler::runFrame()();
+        });
+        if ($wnd.requestAnimationFrame) {
+            $wnd.requestAnimationFrame(callback);
+        } else {
+            $wnd.setTimeout(callback, 16);
+        }
+    }-*/;
+
+    /**
+     * Run the templates for all the events that are waiting for an animation frame
+     */
+
+    private void runFrame() {
+        frameRequested = false;
+        List<PendingEvent> queue = frameQueue;
+        frameQueue = new ArrayList<PendingEvent>();
+        for (PendingEvent pe : queue) {
+            pe.run();
+        }
+    }
+
+    /**
+     * Get the number of events for which templates have been run
+     * @return the number of events handled
+     */
+
+    public int getExecutedCount() {
+        return executed;
+    }
+
+    /**
+     * Get the number of events that were superseded by a later event of the same type
+     * for the same element, and were therefore not handled
+     * @return the number of events coalesced
+     */
+
+    public int getCoalescedCount() {
+        return coalesced;
+    }
+
+    /**
+     * Get the number of events that were not handled because the element they were
+     * addressed to had been removed from the page by the time the templates were due to run
+     * @return the number of events dropped
+     */
+
+    public int getDroppedCount() {
+        return dropped;
+    }
+
+    private static native boolean isAttached(JavaScriptObject node) /*-{
+        var doc = node.ownerDocument;
+        while (node != null) {
+            if (node == doc) {
+                return true;
+            }
+            node = node.parentNode;
+        }
+        return false;
+    }-*/;
+
+    /**
+     * An event waiting to be handled
+     */
+
+    private class PendingEvent extends Timer {
+
+        private List<Object> key;
+        private String mode;
+        private NodeInfo element;
+        private JavaScriptObject event;
+
+        public PendingEvent(List<Object> key, String mode, NodeInfo element, JavaScriptObject event) {
+            this.key = key;
+            this.mode = mode;
+            this.element = element;
+            this.event = event;
+        }
+
+        public void run() {
+            pending.remove(key);
+            Object node = key.get(1);
+            if (node instanceof JavaScriptObject && !isAttached((JavaScriptObject)node)) {
+                dropped++;
+            } else {
+                executed++;
+                processor.applyEventTemplates(mode, element, event, null);
+            }
+            logger.log(Level.FINER, "Event templates executed: " + executed +
+                    ", coalesced: " + coalesced + ", dropped: " + dropped);
+        }
+    }
+
+}
+
+// This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+// If a copy of the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+// This Source Code Form is “Incompatible With Secondary Licenses”, as defined by the Mozilla Public License, v. 2.0.
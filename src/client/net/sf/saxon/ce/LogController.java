@@ -10,7 +10,9 @@ import java.util.logging.Handler;
 import client.net.sf.saxon.ce.lib.GenericLogHandler;
 import client.net.sf.saxon.ce.lib.JsLogHandler;
 import client.net.sf.saxon.ce.lib.ListenerLogHandler;
+import client.net.sf.saxon.ce.expr.parser.CodeInjector;
 import client.net.sf.saxon.ce.lib.TraceListener;
+import client.net.sf.saxon.ce.trace.TimingTraceListener;
 import client.net.sf.saxon.ce.trace.XSLTTraceListener;
 import client.net.sf.saxon.ce.tree.util.URI;
 
@@ -56,6 +58,7 @@ public class LogController {
 	 */
 	
 	private static boolean isTraceEnabled;
+	private static boolean isProfilingEnabled;
 	private static Logger mainLogger;
 	private static Level initLogLevel;
 	
@@ -68,6 +71,8 @@ public class LogController {
 		String logLevel = Window.Location.getParameter("logLevel");
 		// if set, this prevents the JS API overriding the URI parameter
 		initLogLevel = (logLevel == null)? null : Level.parse(logLevel);
+		// profile=true on the URI enables the TimingTraceListener in place of the trace output
+		isProfilingEnabled = "true".equals(Window.Location.getParameter("profile"));
 	}
 	
 	public static boolean LoggingIsDisabledByURI() {
@@ -77,12 +82,43 @@ public class LogController {
 	private static TraceListener traceListener = null;
 	
 	public static void InitializeTraceListener() {
+		if (isProfilingEnabled) {
+			isTraceEnabled = true;
+			traceListener = new TimingTraceListener();
+			return;
+		}
 		checkTraceIsEnabled();
 		if (isTraceEnabled) {
 			traceListener = new XSLTTraceListener();
 		}
 	}
 	
+	/**
+	 * Enable or disable profiling of templates and functions. This takes effect when the
+	 * next stylesheet is compiled.
+	 */
+	
+	public static void setProfilingEnabled(boolean enabled) {
+		isProfilingEnabled = enabled;
+	}
+	
+	public static boolean profilingIsEnabled() {
+		return isProfilingEnabled && isTraceEnabled;
+	}
+	
+	/**
+	 * Get the CodeInjector used at compile time to instrument the stylesheet for the
+	 * current trace listener
+	 */
+	
+	public static CodeInjector getCodeInjector() {
+		if (traceListener instanceof TimingTraceListener) {
+			return ((TimingTraceListener)traceListener).getCodeInjector();
+		} else {
+			return ((XSLTTraceListener)traceListener).getCodeInjector();
+		}
+	}
+	
 	public static void openTraceListener() {		
 		if (isTraceEnabled) {
 			traceListener.open();
@@ -95,6 +131,8 @@ public class LogController {
 				if (isTraceEnabled) {
 					traceListener.close();
 				}
+			} else if (traceListener instanceof TimingTraceListener) {
+				((TimingTraceListener)traceListener).terminate();
 			} else {
 				((XSLTTraceListener)traceListener).terminate();
 			}
@@ -6,20 +6,28 @@ import client.net.sf.saxon.ce.event.PipelineConfiguration;
 import client.net.sf.saxon.ce.event.StartTagBuffer;
 import client.net.sf.saxon.ce.expr.instruct.Executable;
 import client.net.sf.saxon.ce.expr.instruct.Template;
+import client.net.sf.saxon.ce.om.Axis;
 import client.net.sf.saxon.ce.om.CopyOptions;
 import client.net.sf.saxon.ce.om.DocumentInfo;
 import client.net.sf.saxon.ce.om.StructuredQName;
+import client.net.sf.saxon.ce.pattern.NodeKindTest;
 import client.net.sf.saxon.ce.style.*;
 import client.net.sf.saxon.ce.trans.CompilerInfo;
 import client.net.sf.saxon.ce.trans.DecimalFormatManager;
 import client.net.sf.saxon.ce.trans.RuleManager;
 import client.net.sf.saxon.ce.trans.XPathException;
+import client.net.sf.saxon.ce.tree.iter.AxisIterator;
 import client.net.sf.saxon.ce.tree.linked.DocumentImpl;
 import client.net.sf.saxon.ce.tree.linked.LinkedTreeBuilder;
 import client.net.sf.saxon.ce.tree.util.Navigator;
+import client.net.sf.saxon.ce.type.Type;
 import client.net.sf.saxon.ce.value.DecimalValue;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * This <B>PreparedStylesheet</B> class represents a Stylesheet that has been
@@ -35,6 +43,9 @@ public class PreparedStylesheet extends Executable {
     private CompilerInfo compilerInfo;
     private transient StyleNodeFactory nodeFactory;
     private int errorCount = 0;
+    private XPathException lastError = null;
+    private List<Template> deferredTemplates = null;
+    private int stylesheetSize = 0;
 
     // definitions of decimal formats
     private DecimalFormatManager decimalFormatManager;
@@ -45,6 +56,8 @@ public class PreparedStylesheet extends Executable {
     // index of named templates.
     private HashMap<StructuredQName, Template> namedTemplateTable;
 
+    private static Logger logger = Logger.getLogger("XSLT20Processor");
+
     /**
      * Constructor
      * @param config The Configuration set up by the TransformerFactory
@@ -83,7 +96,18 @@ public class PreparedStylesheet extends Executable {
      */
 
     public Controller newTransformer() {
-        Controller c = new Controller(getConfiguration(), this);
+        return newTransformer(getConfiguration());
+    }
+
+    /**
+     * Make a Transformer from this Templates object, to run under a given Configuration.
+     * @param config the Configuration to be used by the transformation. This must be compatible with
+     * the Configuration used to compile the stylesheet, that is, it must share the same NamePool.
+     * @return the new Transformer (always a Controller)
+     */
+
+    public Controller newTransformer(Configuration config) {
+        Controller c = new Controller(config, this);
         c.setPreparedStylesheet(this);
         if (compilerInfo.getDefaultInitialTemplate() != null) {
             try {
@@ -150,7 +174,10 @@ public class PreparedStylesheet extends Executable {
 
     public void prepare(DocumentInfo doc) throws XPathException {
         try {
-            setStylesheetDocument(loadStylesheetModule(doc));
+            long start = System.currentTimeMillis();
+            DocumentImpl styleDoc = loadStylesheetModule(doc);
+            reportCompilePhase("parse", start);
+            setStylesheetDocument(styleDoc);
         } catch (XPathException e) {
             // TODO: error handling
             if (errorCount == 0) {
@@ -212,6 +239,11 @@ public class PreparedStylesheet extends Executable {
         DocumentImpl doc = (DocumentImpl)styleBuilder.getCurrentRoot();
         styleBuilder.reset();
 
+        AxisIterator elements = doc.iterateAxis(Axis.DESCENDANT, NodeKindTest.makeNodeKindTest(Type.ELEMENT));
+        while (elements.next() != null) {
+            stylesheetSize++;
+        }
+
         return doc;
     }
 
@@ -261,13 +293,37 @@ public class PreparedStylesheet extends Executable {
         // Preprocess the stylesheet, performing validation and preparing template definitions
 
         top.setPrincipalStylesheetModule(psm);
+        long start = System.currentTimeMillis();
         psm.preprocess();
+        reportCompilePhase("preprocess", start);
 
         // Compile the stylesheet, retaining the resulting executable
 
         psm.compileStylesheet();
     }
 
+    /**
+     * Get the size of the stylesheet, for use when deciding how many compiled stylesheets to retain
+     * @return the total number of elements in all the stylesheet modules loaded
+     */
+
+    public int getStylesheetSize() {
+        return stylesheetSize;
+    }
+
+    /**
+     * Report the time taken by one phase of stylesheet compilation, if fine logging is enabled
+     * @param phase the name of the phase, for example "parse" or "optimize"
+     * @param start the value of System.currentTimeMillis() when the phase started
+     */
+
+    public void reportCompilePhase(String phase, long start) {
+        if (logger.isLoggable(Level.FINE)) {
+            logger.log(Level.FINE, "Stylesheet " + phase + " phase completed in " +
+                    (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+
     /**
      * Get the associated executable
      * @return the Executable for this stylesheet
@@ -336,6 +392,7 @@ public class PreparedStylesheet extends Executable {
     public void reportError(XPathException err) throws XPathException {
         if (!err.hasBeenReported()) {
             errorCount++;
+            lastError = err;
             compilerInfo.getErrorListener().error(err);
             err.setHasBeenReported(true);
         }
@@ -351,6 +408,54 @@ public class PreparedStylesheet extends Executable {
         return errorCount;
     }
 
+    /**
+     * Get the most recent error reported using {@link #reportError}
+     * @return the most recent error, or null if no errors have been reported
+     */
+
+    public XPathException getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Register a template whose compilation has been deferred until it is first used
+     * @param template the template
+     */
+
+    public void addDeferredTemplate(Template template) {
+        if (deferredTemplates == null) {
+            deferredTemplates = new ArrayList<Template>();
+        }
+        deferredTemplates.add(template);
+    }
+
+    /**
+     * Compile some of the templates whose compilation was deferred and which have not yet been used.
+     * This allows compilation of the stylesheet to be completed in the background, in small steps,
+     * after the first transformation has started. Any static errors are reported to the ErrorListener.
+     * @param limit the maximum number of templates to compile
+     * @return true if there are templates remaining to be compiled
+     */
+
+    public boolean compileDeferredTemplates(int limit) {
+        if (deferredTemplates == null) {
+            return false;
+        }
+        int count = 0;
+        while (!deferredTemplates.isEmpty() && count < limit) {
+            Template t = deferredTemplates.remove(deferredTemplates.size() - 1);
+            if (!t.isCompiled()) {
+                count++;
+                try {
+                    t.compileIfRequired();
+                } catch (XPathException err) {
+                    // already reported
+                }
+            }
+        }
+        return !deferredTemplates.isEmpty();
+    }
+
     /**
      * Report a compile time warning. This calls the errorListener to output details
      * of the warning.
@@ -115,6 +115,9 @@ public class SaxonceApi {
 		$wnd.Saxon.getLogLevel = $entry(function() {
 			return @client.net.sf.saxon.ce.LogController::getLogLevel()()
 		});
+		$wnd.Saxon.setProfiling = $entry(function(enabled) {
+			return @client.net.sf.saxon.ce.LogController::setProfilingEnabled(Z)(!!enabled)
+		});
 		$wnd.Saxon.newXSLT20Processor = function(doc) {
 			var sp = new $wnd.Saxonce.XSLT20Processor(doc);
 			sp.setThis(sp);
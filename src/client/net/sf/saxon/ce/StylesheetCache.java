@@ -0,0 +1,211 @@
+package client.net.sf.saxon.ce;
+
+import client.net.sf.saxon.ce.om.DocumentInfo;
+import client.net.sf.saxon.ce.om.NamePool;
+import client.net.sf.saxon.ce.trans.CompilerInfo;
+import client.net.sf.saxon.ce.tree.util.DocumentNumberAllocator;
+import com.google.gwt.logging.client.LogConfiguration;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A cache of compiled stylesheets, shared by all the processors on the page, so that when several
+ * processors use the same stylesheet, or the same stylesheet is imported more than once, it is only
+ * compiled once. The compiled stylesheet is used by the Controllers of all these processors. The state
+ * it holds on their behalf is either harmless to share or released after each transformation: templates
+ * that are compiled lazily are compiled once, by whichever Controller first needs them, and the key
+ * indexes held by the KeyManager are released when a transformation finishes.
+ *
+ * <p>Stylesheets are cached by the absolute URI of the principal stylesheet module together with the
+ * compile-time options. A stylesheet that has no base URI is not cached. Tracing and profiling instrument
+ * the stylesheet when it is compiled, so while either is enabled the cache is not used at all. The size of
+ * each entry is estimated from the number of elements in all its stylesheet modules, and the least recently
+ * used entries are discarded when the total exceeds a limit.</p>
+ *
+ * <p>The names in a compiled stylesheet are allocated from the NamePool of the Configuration that
+ * compiled it, so a stylesheet can only be used with source documents built using a compatible
+ * Configuration. A processor that uses the cache must therefore create its Configuration using
+ * {@link #makeConfiguration}, before it builds any documents.</p>
+ */
+
+public class StylesheetCache {
+
+    /**
+     * The maximum total size of the cached stylesheets, measured in elements
+     */
+
+    private static final int MAX_SIZE = 100000;
+
+    private static LinkedHashMap<String, Entry> cache = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private static int totalSize = 0;
+    private static int hits = 0;
+    private static int misses = 0;
+    private static Logger logger = Logger.getLogger("StylesheetCache");
+
+    private static NamePool namePool = new NamePool();
+    private static DocumentNumberAllocator documentNumberAllocator = new DocumentNumberAllocator();
+
+    private static class Entry {
+        String uri;
+        PreparedStylesheet stylesheet;
+        int size;
+    }
+
+    private StylesheetCache() {}
+
+    /**
+     * Create a Configuration that shares its NamePool and document numbering with all the other
+     * Configurations created by this method, so that it can use any stylesheet in the cache
+     * @return the new Configuration
+     */
+
+    public static Configuration makeConfiguration() {
+        Configuration config = new Configuration();
+        config.setNamePool(namePool);
+        config.setDocumentNumberAllocator(documentNumberAllocator);
+        return config;
+    }
+
+    /**
+     * Make the key under which a stylesheet is cached
+     * @param styleDoc the document containing the principal stylesheet module
+     * @param info the compile-time options
+     * @return the key, or null if the stylesheet cannot be cached because it has no base URI, or because
+     * tracing or profiling is enabled
+     */
+
+    public static String makeKey(DocumentInfo styleDoc, CompilerInfo info) {
+        if (LogConfiguration.loggingIsEnabled() && LogController.traceIsEnabled()) {
+            return null;
+        }
+        String uri = styleDoc.getSystemId();
+        if (uri == null || uri.length() == 0) {
+            return null;
+        }
+        return uri + " recovery=" + info.getRecoveryPolicy() + " lazy=" + info.isLazyTemplateCompilation() +
+                " initialMode=" + info.getDefaultInitialMode() + " initialTemplate=" + info.getDefaultInitialTemplate();
+    }
+
+    /**
+     * Get a compiled stylesheet from the cache
+     * @param key the key returned by {@link #makeKey}
+     * @param config the Configuration that will be used to run the stylesheet
+     * @return the compiled stylesheet, or null if it is not in the cache, or if it was compiled using
+     * a Configuration that is not compatible with the one supplied
+     */
+
+    public static PreparedStylesheet get(String key, Configuration config) {
+        Entry entry = (key == null ? null : cache.get(key));
+        if (entry == null || !entry.stylesheet.getConfiguration().isCompatible(config)) {
+            misses++;
+            return null;
+        }
+        hits++;
+        logger.log(Level.FINE, "Using cached stylesheet " + entry.uri);
+        return entry.stylesheet;
+    }
+
+    /**
+     * Add a compiled stylesheet to the cache
+     * @param key the key returned by {@link #makeKey}
+     * @param styleDoc the document containing the principal stylesheet module
+     * @param stylesheet the compiled stylesheet. This is not cached unless it was compiled using a
+     * Configuration created by {@link #makeConfiguration}.
+     */
+
+    public static void put(String key, DocumentInfo styleDoc, PreparedStylesheet stylesheet) {
+        if (key == null || stylesheet.getConfiguration().getNamePool() != namePool) {
+            return;
+        }
+        Entry entry = new Entry();
+        entry.uri = styleDoc.getSystemId();
+        entry.stylesheet = stylesheet;
+        entry.size = stylesheet.getStylesheetSize();
+        Entry old = cache.put(key, entry);
+        if (old != null) {
+            totalSize -= old.size;
+        }
+        totalSize += entry.size;
+        // discard the least recently used stylesheets, but always keep the one just added
+        Iterator<Entry> iter = cache.values().iterator();
+        while (totalSize > MAX_SIZE && cache.size() > 1) {
+            Entry eldest = iter.next();
+            totalSize -= eldest.size;
+            iter.remove();
+        }
+        if (logger.isLoggable(Level.FINE)) {
+            logger.log(Level.FINE, "Cached stylesheet " + entry.uri + " (" + entry.size + " elements); cache holds " +
+                    cache.size() + " stylesheets, " + totalSize + " elements; hits " + hits + ", misses " + misses);
+        }
+    }
+
+    /**
+     * Remove all compiled versions of a stylesheet from the cache, for example because the stylesheet
+     * has been modified
+     * @param uri the absolute URI of the principal stylesheet module
+     */
+
+    public static void invalidate(String uri) {
+        Iterator<Entry> iter = cache.values().iterator();
+        while (iter.hasNext()) {
+            Entry entry = iter.next();
+            if (entry.uri.equals(uri)) {
+                totalSize -= entry.size;
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove all the stylesheets from the cache
+     */
+
+    public static void clear() {
+        cache.clear();
+        totalSize = 0;
+    }
+
+    /**
+     * Get the number of stylesheets in the cache
+     * @return the number of entries
+     */
+
+    public static int getEntryCount() {
+        return cache.size();
+    }
+
+    /**
+     * Get the estimated size of the stylesheets in the cache
+     * @return the total number of elements in the modules of the cached stylesheets
+     */
+
+    public static int getTotalSize() {
+        return totalSize;
+    }
+
+    /**
+     * Get the number of requests for a stylesheet that were satisfied from the cache
+     * @return the number of cache hits
+     */
+
+    public static int getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Get the number of requests for a stylesheet that were not satisfied from the cache
+     * @return the number of cache misses
+     */
+
+    public static int getMissCount() {
+        return misses;
+    }
+
+}
+
+// This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+// If a copy of the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+// This Source Code Form is “Incompatible With Secondary Licenses”, as defined by the Mozilla Public License, v. 2.0.
@@ -253,6 +253,50 @@ public class XSLT20Processor implements Exportable {
 	public void setBaseOutputURI(String URI) {
 		controller.setBaseOutputURI(URI);
 	}
+
+	/**
+	 * Request incremental update of the HTML page by updateHTMLDocument. When set, the content of
+	 * result documents written with method ixsl:replace-content is patched into the page, so that
+	 * re-running the transformation after a small change to the source document modifies only the
+	 * parts of the page whose content has changed
+	 * @param incremental true to patch result documents into the page; false (the default) to
+	 * replace the content of each target element
+	 */
+	public void setIncrementalUpdate(boolean incremental) {
+		controller.setIncrementalUpdate(incremental);
+	}
+
+	/**
+	 * Ask whether incremental update of the HTML page has been requested
+	 * @return true if result documents are patched into the page by updateHTMLDocument
+	 */
+	public boolean getIncrementalUpdate() {
+		return controller.isIncrementalUpdate();
+	}
+
+	/**
+	 * Following changes to the source document of the last call of updateHTMLDocument, made with
+	 * incremental update set, evaluate again only the result documents whose context node contains
+	 * one of the changed nodes, and patch them into the page. Only result documents that replace
+	 * or patch the content of their target are evaluated again; those using the default method,
+	 * which appends content, are not. Changes that are visible to the stylesheet in other ways,
+	 * for example through global variables or keys, require the whole transformation to be run again.
+	 * @param nodes a node, or an array of nodes, in the source document that have been changed; when
+	 * nodes are inserted or deleted, their parent should be given
+	 * @return the number of result documents evaluated again
+	 */
+	public int updateSourceNodes(JavaScriptObject nodes) {
+		return processor.updateSourceNodes(nodes);
+	}
+
+	/**
+	 * Discard any compiled versions of a stylesheet held in the cache shared by all
+	 * processors, so that it is reloaded and recompiled when it is next used
+	 * @param uri the absolute URI of the stylesheet
+	 */
+	public void invalidateStylesheet(String uri) {
+		StylesheetCache.invalidate(uri);
+	}
 	
 	/**
 	 * Return result-documents as a JS map of URI/dom name/value pairs
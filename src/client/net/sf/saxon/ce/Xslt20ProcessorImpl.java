@@ -42,6 +42,7 @@ import client.net.sf.saxon.ce.value.SequenceType;
 import com.google.gwt.core.client.EntryPoint;
 import com.google.gwt.core.client.JavaScriptException;
 import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.core.client.JsArray;
 import com.google.gwt.dom.client.Document;
 import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.EventTarget;
@@ -57,6 +58,7 @@ import com.google.gwt.logging.client.LogConfiguration;
 import com.google.gwt.user.client.DOM;
 import com.google.gwt.user.client.Event;
 import com.google.gwt.user.client.EventListener;
+import com.google.gwt.user.client.Timer;
 import com.google.gwt.user.client.Window;
 //import com.google.gwt.xml.client.XMLParser;
 import java.util.ArrayList;
@@ -77,12 +79,14 @@ import org.timepedia.exporter.client.ExporterUtil;
  */
 public class Xslt20ProcessorImpl implements EntryPoint {
 
-    final Configuration config = new Configuration();
+    final Configuration config = StylesheetCache.makeConfiguration();
     private boolean registeredForEvents = false;
     private boolean principleEventListener = false;
     PreparedStylesheet stylesheet = null;
     private JavaScriptObject successCallback = null;
     Controller localController = new Controller(config, true);       
+    private boolean backgroundCompilation = false;
+    private long startTime;
     private static Logger logger = Logger.getLogger("XSLT20Processor");
    
     public void onModuleLoad() {
@@ -194,6 +198,13 @@ public class Xslt20ProcessorImpl implements EntryPoint {
                     sourceURI = scripts.getItem(i).getAttribute("data-source");
                     initialMode = scripts.getItem(i).getAttribute("data-initial-mode");
                     initialTemplate = scripts.getItem(i).getAttribute("data-initial-template");
+                    // "yes" compiles each template on first use; "background" also compiles the
+                    // remaining templates in the background once the first transformation is complete
+                    String lazy = scripts.getItem(i).getAttribute("data-lazy-compile");
+                    if ("yes".equals(lazy) || "background".equals(lazy)) {
+                        config.setLazyTemplateCompilation(true);
+                        backgroundCompilation = "background".equals(lazy);
+                    }
                     break;
                 }
             }
@@ -310,6 +321,7 @@ public class Xslt20ProcessorImpl implements EntryPoint {
     	deregisterEventHandlers();
     	try {
     	importedStylesheet = SaxonceApi.getDocSynchronously(doc, config);
+    	stylesheet = null;
     	} catch(XPathException e) {
     		handleException(e, "importStylesheet");
     	}
@@ -317,6 +329,8 @@ public class Xslt20ProcessorImpl implements EntryPoint {
     
     // fetched either synchronously or asynchronously
     NodeInfo fetchedSourceDoc;
+    // the Controller of the last transformation that recorded result documents for incremental update
+    private Controller incrementalController = null;
     boolean transformInvoked;
     boolean docFetchRequired;
    
@@ -328,6 +342,7 @@ public class Xslt20ProcessorImpl implements EntryPoint {
         		throw new Exception("Stylesheet for transform is null");
         	}
         	docFetchRequired = inSourceDoc != null;
+            startTime = System.currentTimeMillis();
             CompilerInfo info = config.getDefaultXsltCompilerInfo();
             info.setErrorListener(new StandardErrorListener());
 
@@ -374,6 +389,8 @@ public class Xslt20ProcessorImpl implements EntryPoint {
 	 		            	 return;
 	 		              }
 	 		              DocumentInfo responseDoc = config.wrapXMLDocument(responseNode, URI);
+	 		              // the DOM was parsed here, so whitespace may be stripped from it in place
+	 		              ((HTMLDocumentWrapper)responseDoc).setOwnsDOM(true);
 	 		              // now document is here, we can transform it
 	 		              Node result = invokeTransform(responseDoc, transformTarget);
 	 		              hr.setResultNode(result); // TODO: This isn't used yet
@@ -397,11 +414,19 @@ public class Xslt20ProcessorImpl implements EntryPoint {
             	if (LogConfiguration.loggingIsEnabled()) {
             		LogController.InitializeTraceListener();
             	}
-            	logger.log(Level.FINE, "Compiling Stylesheet...");
-	            PreparedStylesheet sheet = new PreparedStylesheet(config, info);
-	            sheet.prepare(styleDoc);
-	            stylesheet = sheet;
-	            logger.log(Level.FINE, "Stylesheet compiled OK");
+            	String cacheKey = StylesheetCache.makeKey(styleDoc, info);
+            	PreparedStylesheet cached = StylesheetCache.get(cacheKey, config);
+            	if (cached != null) {
+            		stylesheet = cached;
+            		logger.log(Level.FINE, "Using previously compiled stylesheet " + styleDoc.getSystemId());
+            	} else {
+	            	logger.log(Level.FINE, "Compiling Stylesheet...");
+		            PreparedStylesheet sheet = new PreparedStylesheet(config, info);
+		            sheet.prepare(styleDoc);
+		            stylesheet = sheet;
+		            StylesheetCache.put(cacheKey, styleDoc, sheet);
+		            logger.log(Level.FINE, "Stylesheet compiled OK in " + (System.currentTimeMillis() - startTime) + "ms");
+            	}
             }
             
             // for async operation - this is called within the callback - so don't call here            
@@ -429,11 +454,50 @@ public class Xslt20ProcessorImpl implements EntryPoint {
         }
     }
     
+    /**
+     * Following changes to the source document of the last transformation, evaluate again each
+     * xsl:result-document instruction whose context node contains a changed node, and patch the results
+     * into the page. This is available only if the transformation was run with incremental update set.
+     * @param nodes a DOM node, or an array of DOM nodes, in the source document that have been changed.
+     * When nodes are inserted or deleted, their parent should be reported.
+     * @return the number of xsl:result-document instructions evaluated again
+     */
+    public int updateSourceNodes(JavaScriptObject nodes) {
+    	try {
+    		if (incrementalController == null || fetchedSourceDoc == null ||
+    				!(fetchedSourceDoc.getDocumentRoot() instanceof HTMLDocumentWrapper)) {
+    			throw new XPathException("updateSourceNodes requires a transformation run with incremental update set");
+    		}
+    		// the source DOM has been modified outside Saxon
+    		HTMLDocumentWrapper.notifyMutation();
+    		HTMLDocumentWrapper sourceWrapper = (HTMLDocumentWrapper)fetchedSourceDoc.getDocumentRoot();
+    		List<NodeInfo> changed = new ArrayList<NodeInfo>();
+    		if (Node.is(nodes)) {
+    			changed.add(sourceWrapper.wrap((Node)nodes));
+    		} else {
+    			JsArray<Node> array = nodes.cast();
+    			for (int i = 0; i < array.length(); i++) {
+    				changed.add(sourceWrapper.wrap(array.get(i)));
+    			}
+    		}
+    		int count = incrementalController.reapplyResultRegions(changed);
+    		logger.log(Level.FINE, "Result documents evaluated again: " + count);
+    		return count;
+    	} catch (Exception e) {
+    		handleException(e, "updateSourceNodes");
+    		return 0;
+    	}
+    }
+
     public static native boolean isNonDocNode(JavaScriptObject obj) /*-{
 		return (typeof obj.getNodeType == "function" && obj.getNodeType() != 9);
 	}-*/;
           
     private List<Mode> registeredEventModes = null;
+    private HashMap<String, Mode> eventModeIndex = new HashMap<String, Mode>();
+    private Controller matchingController = null;
+    private EventScheduler eventScheduler = null;
+    private int matchingControllerMutationCount;
     private boolean registeredProcessorForNonDomEvents = false;
     
     private void registerNonDOMevents(Controller controller) throws XPathException {
@@ -510,6 +574,7 @@ public class Xslt20ProcessorImpl implements EntryPoint {
         		logger.warning("Event name: '" + eventName + "' is invalid - names should begin with 'on'");
         	} else {
         		eventName = eventName.substring(2);
+        		eventModeIndex.put(eventName, eventMode);
         	}
             int eventNo = Event.getTypeInt(eventName);
             DOM.sinkEvents((com.google.gwt.user.client.Element)docElement, 
@@ -539,6 +604,24 @@ public class Xslt20ProcessorImpl implements EntryPoint {
     }-*/;
     
    
+    /**
+     * Compile the templates whose compilation was deferred, a few at a time, so that
+     * static errors are reported without holding up the first transformation
+     * @param sheet the compiled stylesheet
+     */
+    private void completeCompilationInBackground(final PreparedStylesheet sheet) {
+        Timer t = new Timer() {
+            public void run() {
+                if (sheet.compileDeferredTemplates(20)) {
+                    schedule(1);
+                } else {
+                    logger.log(Level.FINE, "Deferred compilation of templates complete");
+                }
+            }
+        };
+        t.schedule(1);
+    }
+
     /**
      * This invokes a transform, but it may be called either on an async callback or directly
      * We need to ensure this method runs once and only once for a single transform request -
@@ -558,13 +641,20 @@ public class Xslt20ProcessorImpl implements EntryPoint {
     	transformInvoked = true;
     	
     	try {
-            final Controller controller = stylesheet.newTransformer();
+            final Controller controller = stylesheet.newTransformer(config);
             localController.setSourceNode(fetchedSourceDoc);
             controller.importControllerSettings(localController);
             logger.log(Level.FINE, "Commencing transform type:" + controller.getApiCommand().toString());
+            long transformStart = System.currentTimeMillis();
             Node outResult = controller.transform(fetchedSourceDoc, target);
-            logger.log(Level.FINE, "Transform complete");
+            long now = System.currentTimeMillis();
+            logger.log(Level.FINE, "Transform complete in " + (now - transformStart) +
+                    "ms; time to first output " + (now - startTime) + "ms");
+            if (backgroundCompilation) {
+                completeCompilationInBackground(stylesheet);
+            }
             localController.importResults(controller);
+            incrementalController = (controller.isIncrementalUpdate() ? controller : null);
             registerEventHandlers(controller);
             if (successCallback != null) {
             	successOwner.invokeSuccess(successCallback);
@@ -610,41 +700,76 @@ public class Xslt20ProcessorImpl implements EntryPoint {
     // targetNode
     
     private Mode getModeFromEvent(Event event) {
-    	Mode result = null;
-    	String mode = "on" + event.getType(); // eg. onclick
-    	for (Mode m: registeredEventModes){
-    		if (m.getModeName().getLocalName().equals(mode)) {
-    			result = m;
-    			break;
-    		}
+    	// the index is keyed by event type, eg. click for mode ixsl:onclick
+    	return eventModeIndex.get(event.getType());
+    }
+
+    /**
+     * Get a Controller to be used for evaluating match patterns against the nodes affected by an event.
+     * The same Controller is used for successive events, unless the HTML page has been modified since it
+     * was created, in which case any indexes it holds may be out of date.
+     * @return the Controller
+     */
+    private Controller getMatchingController() throws XPathException {
+    	int mutationCount = HTMLDocumentWrapper.getMutationCount();
+    	if (matchingController == null || matchingControllerMutationCount != mutationCount) {
+    		matchingController = stylesheet.newTransformer(config);
+    		matchingControllerMutationCount = mutationCount;
+    	}
+    	matchingController.importControllerSettings(localController);
+    	return matchingController;
+    }
+
+    /**
+     * Get the scheduler used for templates whose ixsl:event-policy requests that events be coalesced
+     * @return the event scheduler
+     */
+    public EventScheduler getEventScheduler() {
+    	if (eventScheduler == null) {
+    		eventScheduler = new EventScheduler(this);
     	}
-    	return result;
+    	return eventScheduler;
     }
+
     public void bubbleApplyTemplates(Node node, Event event)  {
     	if (principleEventListener) {
     		Controller.relayEvent(node, event); // make a call to this method for other instances
     	}
+    	Mode matchedMode = getModeFromEvent(event);
+    	if (matchedMode == null) {
+    		return;
+    	}
     	NodeInfo eventNode = ((HTMLDocumentWrapper)config.getHostPage()).wrap(node);
     	SequenceIterator bubbleElements = eventNode.iterateAxis(Axis.ANCESTOR, NodeKindTest.ELEMENT);
-    	Controller controller = stylesheet.newTransformer();
+    	Controller controller = null;
     	try {
-	        controller.importControllerSettings(localController);
-	    	XPathContext ruleContext = controller.newXPathContext();
-	    	Mode matchedMode = getModeFromEvent(event);
+	    	XPathContext ruleContext = null;
 	    	
-	    	if (matchedMode == null) {
-	    		return;
-	    	}
-	    	
-	    	// walk up the tree until we find an element with matching rule for the event mode
+	    	// walk up the tree until we find an element with matching rule for the event mode.
+	    	// Elements that no rule can match, judging by their name, are skipped without evaluating
+	    	// any patterns; a Controller is only needed once a candidate element is found
 
     		NodeInfo element = eventNode;
 	        while (element != null) {
+	            if (!matchedMode.mightMatch(element)) {
+	                element = (NodeInfo)bubbleElements.next();
+	                continue;
+	            }
+	            if (ruleContext == null) {
+	                controller = getMatchingController();
+	                ruleContext = controller.newXPathContext();
+	            }
 	            Rule matchedRule = matchedMode.getRule(element, ruleContext);
 	            if (matchedRule != null && eventPropertyMatch(event, matchedRule)) {
 	            	logger.log(Level.FINER, "Bubble Apply-Templates - Mode: " + matchedMode.getModeName().getLocalName() + 
 	            			" Element: " + controller.getNamePool().getLocalName(element.getNameCode()));
-	            	applyEventTemplates(matchedMode.getModeName().getClarkName(), element, event, null);
+	            	int delay = matchedRule.getAction().getEventDelay();
+	            	if (delay < 0) {
+	            	    applyEventTemplates(matchedMode.getModeName().getClarkName(), element, event, null);
+	            	} else {
+	            	    // coalesce with other events for the same element, as requested by ixsl:event-policy
+	            	    getEventScheduler().schedule(delay, matchedMode.getModeName().getClarkName(), element, event);
+	            	}
 	            	if (matchedRule.getIxslPreventDefault()) {
             			event.preventDefault();
 	            	}
@@ -695,7 +820,7 @@ public class Xslt20ProcessorImpl implements EntryPoint {
         		start = config.getHostPage();
         	}
         	logger.log(Level.FINER, "OnEvent Apply-Templates - Mode: " + mode + " Event: " + event.toString());
-            Controller controller = stylesheet.newTransformer();
+            Controller controller = stylesheet.newTransformer(config);
 
             controller.importControllerSettings(localController);
             // override any imported initial mode with that for the event
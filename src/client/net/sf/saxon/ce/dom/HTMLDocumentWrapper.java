@@ -1,6 +1,7 @@
 package client.net.sf.saxon.ce.dom;
 
 import client.net.sf.saxon.ce.Configuration;
+import client.net.sf.saxon.ce.event.Stripper;
 import client.net.sf.saxon.ce.lib.NamespaceConstant;
 import client.net.sf.saxon.ce.om.Axis;
 import client.net.sf.saxon.ce.om.DocumentInfo;
@@ -9,15 +10,20 @@ import client.net.sf.saxon.ce.om.NamespaceBinding;
 import client.net.sf.saxon.ce.om.NodeInfo;
 import client.net.sf.saxon.ce.om.StandardNames;
 import client.net.sf.saxon.ce.pattern.NodeKindTest;
+import client.net.sf.saxon.ce.trans.XPathException;
 import client.net.sf.saxon.ce.tree.iter.AxisIterator;
+import client.net.sf.saxon.ce.tree.util.Navigator;
 import client.net.sf.saxon.ce.type.Type;
+import client.net.sf.saxon.ce.value.Whitespace;
 
 import com.google.gwt.core.client.JavaScriptObject;
 import com.google.gwt.dom.client.Document;
 import com.google.gwt.dom.client.Element;
 import com.google.gwt.dom.client.Node;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 /**
  * The document node of a tree implemented as a wrapper around an XML DOM Document.
@@ -32,6 +38,27 @@ public class HTMLDocumentWrapper extends HTMLNodeWrapper implements DocumentInfo
     private HashMap<String, Object> userData;
     private HashMap<String, HTMLNodeWrapper> idIndex;
     private boolean isHttpRequested;
+    private HashMap<Node, Integer> orderIndex;
+    private int orderIndexMutationCount = -1;
+    private int orderComparisons = 0;
+    private boolean cacheWrappers = false;
+    private HashMap<Node, HTMLNodeWrapper> wrapperCache;
+    private int wrapperCacheMutationCount = -1;
+    private boolean ownsDOM = false;
+    private Object strippedWith = null;
+
+    /**
+     * Count of DOM mutations made by Saxon (or by JavaScript it has invoked). Any cached information
+     * derived from the structure of a wrapped DOM is discarded when this changes.
+     */
+    private static int mutationCount = 0;
+    private static JavaScriptObject mutationObserver = null;
+
+    /**
+     * Number of document-order comparisons made using the navigational algorithm before a
+     * preorder numbering index is built for the document.
+     */
+    private static final int ORDER_INDEX_THRESHOLD = 32;
 
     /**
      * Wrap a DOM Document or DocumentFragment node
@@ -322,6 +349,247 @@ public class HTMLDocumentWrapper extends HTMLNodeWrapper implements DocumentInfo
         }
     }
 
+    /**
+     * Say whether the underlying DOM was created by Saxon (for example by parsing the result of an
+     * HTTP request) and is not visible to any other script, in which case Saxon is free to modify it
+     * @param owned true if Saxon owns the DOM
+     */
+
+    public void setOwnsDOM(boolean owned) {
+        ownsDOM = owned;
+    }
+
+    /**
+     * Ask whether the underlying DOM was created by Saxon and may be modified by it
+     * @return true if Saxon owns the DOM
+     */
+
+    public boolean ownsDOM() {
+        return ownsDOM;
+    }
+
+    /**
+     * Remove whitespace text nodes from the underlying DOM according to the xsl:strip-space and
+     * xsl:preserve-space rules, so that the stripped tree can be navigated directly rather than
+     * through a {@link client.net.sf.saxon.ce.tree.wrapper.SpaceStrippedDocument}. This is done
+     * at most once for a document; it must only be used when Saxon owns the DOM.
+     * @param stripper the Stripper defining the rules
+     * @param rules an object identifying the rules, used to avoid stripping the same document twice
+     * @return false if the document has already been stripped using different rules
+     * @throws XPathException if the stripping rules are ambiguous
+     */
+
+    public boolean stripWhitespace(Stripper stripper, Object rules) throws XPathException {
+        if (strippedWith != null) {
+            return strippedWith == rules;
+        }
+        List<Node> garbage = new ArrayList<Node>();
+        AxisIterator kids = iterateAxis(Axis.CHILD, NodeKindTest.ELEMENT);
+        while (true) {
+            NodeInfo element = (NodeInfo)kids.next();
+            if (element == null) {
+                break;
+            }
+            stripElement((HTMLNodeWrapper)element, Stripper.ALWAYS_PRESERVE, stripper, garbage);
+        }
+        for (Node n : garbage) {
+            n.getParentNode().removeChild(n);
+        }
+        strippedWith = rules;
+        if (!garbage.isEmpty()) {
+            notifyMutation();
+        }
+        return true;
+    }
+
+    private void stripElement(HTMLNodeWrapper element, byte parentPreserve, Stripper stripper, List<Node> garbage)
+            throws XPathException {
+        // this follows the logic of Stripper.startElement() and Stripper.characters()
+        byte preserve = (byte)(parentPreserve & Stripper.PRESERVE_PARENT);
+        byte elementStrip = stripper.isSpacePreserving(element.getFingerprint());
+        if (elementStrip == Stripper.ALWAYS_PRESERVE) {
+            preserve |= Stripper.ALWAYS_PRESERVE;
+        } else if (elementStrip == Stripper.ALWAYS_STRIP) {
+            preserve |= Stripper.ALWAYS_STRIP;
+        }
+        String xmlSpace = Navigator.getAttributeValue(element, NamespaceConstant.XML, "space");
+        if ("preserve".equals(xmlSpace)) {
+            preserve |= Stripper.PRESERVE_PARENT;
+        } else if (xmlSpace != null) {
+            preserve &= ~Stripper.PRESERVE_PARENT;
+        }
+        boolean strip = (preserve & (Stripper.ALWAYS_PRESERVE | Stripper.PRESERVE_PARENT)) == 0 ||
+                (preserve & Stripper.ALWAYS_STRIP) != 0;
+        AxisIterator kids = element.iterateAxis(Axis.CHILD);
+        while (true) {
+            HTMLNodeWrapper child = (HTMLNodeWrapper)kids.next();
+            if (child == null) {
+                break;
+            }
+            int kind = child.getNodeKind();
+            if (kind == Type.ELEMENT) {
+                stripElement(child, preserve, stripper, garbage);
+            } else if (kind == Type.TEXT && strip && Whitespace.isWhite(child.getStringValueCS())) {
+                // a text node in the data model may span several adjacent DOM text nodes
+                Node n = (Node)child.getUnderlyingNode();
+                for (int i = 0; i < child.span && n != null; i++) {
+                    garbage.add(n);
+                    n = n.getNextSibling();
+                }
+            }
+        }
+    }
+
+    /**
+     * Notify that a DOM tree may have been modified, for example by the HTMLWriter, by applying a
+     * pending update list, or by calling out to JavaScript. This invalidates any structural indexes
+     * held by document wrappers.
+     */
+
+    public static void notifyMutation() {
+        mutationCount++;
+    }
+
+    /**
+     * Get a counter that is incremented whenever a DOM tree may have been modified. An index built
+     * over a DOM tree remains valid for as long as this value is unchanged.
+     * @return the number of modifications notified so far
+     */
+
+    public static int getMutationCount() {
+        return mutationCount;
+    }
+
+    /**
+     * Register a listener that notifies any DOM mutation within a document, whether made by Saxon
+     * or not, using the browser's MutationObserver interface.
+     * @param doc the DOM document to be observed
+     * @return true if the listener was registered; false if the browser does not support it, in which
+     * case changes made by other scripts cannot be detected.
+     */
+
+    public static native boolean observeMutations(Node doc) /*-{
+        if (typeof $wnd.MutationObserver != "function") {
+            return false;
+        }
+        var observer = new $wnd.MutationObserver($entry(function() {
+            @client.net.sf.saxon.ce.dom.HTMLDocumentWrapper::notifyMutation()();
+        }));
+        observer.observe(doc, {childList: true, attributes: true, characterData: true, subtree: true});
+        @client.net.sf.saxon.ce.dom.HTMLDocumentWrapper::mutationObserver = observer;
+        return true;
+    }-*/;
+
+    /**
+     * Take any mutation records not yet delivered to the observer registered using
+     * {@link #observeMutations}. Records are delivered asynchronously, so this must be called
+     * when Saxon is entered from a script that may just have modified the page.
+     */
+
+    public static native void checkMutations() /*-{
+        var observer = @client.net.sf.saxon.ce.dom.HTMLDocumentWrapper::mutationObserver;
+        if (observer != null && observer.takeRecords().length > 0) {
+            @client.net.sf.saxon.ce.dom.HTMLDocumentWrapper::notifyMutation()();
+        }
+    }-*/;
+
+    /**
+     * Request that node wrappers for elements in this document are cached and reused, so that
+     * navigating to the same node again returns the same wrapper, together with its name code,
+     * attribute list and sibling position. The cache is discarded when the DOM is modified.
+     * @param cache true if wrappers are to be cached
+     */
+
+    public void setWrapperCaching(boolean cache) {
+        cacheWrappers = cache;
+        wrapperCache = null;
+    }
+
+    /**
+     * Get the wrapper previously created for a DOM node, if wrapper caching is enabled
+     * @param domNode the DOM node
+     * @return the cached wrapper, or null if there is none
+     */
+
+    HTMLNodeWrapper getCachedWrapper(Node domNode) {
+        if (wrapperCache == null) {
+            return null;
+        }
+        if (wrapperCacheMutationCount != mutationCount) {
+            wrapperCache = null;
+            return null;
+        }
+        return wrapperCache.get(domNode);
+    }
+
+    /**
+     * Add a wrapper to the wrapper cache, if wrapper caching is enabled
+     * @param domNode the DOM node
+     * @param wrapper the wrapper for the DOM node
+     */
+
+    void cacheWrapper(Node domNode, HTMLNodeWrapper wrapper) {
+        if (!cacheWrappers) {
+            return;
+        }
+        if (wrapperCache == null || wrapperCacheMutationCount != mutationCount) {
+            wrapperCache = new HashMap<Node, HTMLNodeWrapper>(256);
+            wrapperCacheMutationCount = mutationCount;
+        }
+        wrapperCache.put(domNode, wrapper);
+    }
+
+    /**
+     * Get the position of a DOM node in a preorder traversal of this document. The numbering is
+     * built on demand in a single traversal of the DOM, but only once the document has been used
+     * for a number of document-order comparisons; it is discarded when the DOM is modified.
+     * @param domNode the DOM node whose sequence number is required
+     * @return the sequence number of the node, or -1 if the numbering index is not (yet) available
+     * or does not include this node
+     */
+
+    int getSequenceNumber(Node domNode) {
+        if (orderIndexMutationCount != mutationCount) {
+            orderIndex = null;
+            orderIndexMutationCount = mutationCount;
+            orderComparisons = 0;
+        }
+        if (orderIndex == null) {
+            if (++orderComparisons < ORDER_INDEX_THRESHOLD) {
+                return -1;
+            }
+            orderIndex = buildOrderIndex();
+        }
+        Integer seq = orderIndex.get(domNode);
+        return (seq == null ? -1 : seq);
+    }
+
+    /**
+     * Number all the nodes in the DOM in document order
+     * @return a map from DOM nodes to their preorder sequence numbers
+     */
+
+    private HashMap<Node, Integer> buildOrderIndex() {
+        HashMap<Node, Integer> index = new HashMap<Node, Integer>(256);
+        int seq = 0;
+        Node n = node;
+        while (n != null) {
+            index.put(n, seq++);
+            Node next = n.getFirstChild();
+            while (next == null && n != node) {
+                next = n.getNextSibling();
+                if (next == null) {
+                    n = n.getParentNode();
+                    if (n == null) {
+                        break;
+                    }
+                }
+            }
+            n = next;
+        }
+        return index;
+    }
+
     /**
      * Create a DocumentFragment node. Method not available from GWT
      */
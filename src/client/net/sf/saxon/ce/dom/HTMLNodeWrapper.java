@@ -102,8 +102,19 @@ public class HTMLNodeWrapper implements NodeInfo, VirtualNode, SiblingCountingNo
         case DOCUMENT_FRAGMENT_NODE:
             return docWrapper;
         case Node.ELEMENT_NODE:
+            wrapper = docWrapper.getCachedWrapper(node);
+            if (wrapper != null) {
+                if (wrapper.parent == null) {
+                    wrapper.parent = parent;
+                }
+                if (wrapper.index == -1) {
+                    wrapper.index = index;
+                }
+                return wrapper;
+            }
             wrapper = new HTMLNodeWrapper(node, parent, index);
             wrapper.nodeKind = Type.ELEMENT;
+            docWrapper.cacheWrapper(node, wrapper);
             break;
         case Type.ATTRIBUTE:
             wrapper = new HTMLNodeWrapper(node, parent, index);
@@ -214,6 +225,9 @@ public class HTMLNodeWrapper implements NodeInfo, VirtualNode, SiblingCountingNo
     */
 
     public boolean isSameNodeInfo(NodeInfo other) {
+        if (other == this) {
+            return true;
+        }
         if (!(other instanceof HTMLNodeWrapper)) {
             return false;
         }
@@ -310,6 +324,17 @@ public class HTMLNodeWrapper implements NodeInfo, VirtualNode, SiblingCountingNo
     */
 
     public int compareOrder(NodeInfo other) {
+        if (other instanceof HTMLNodeWrapper && ((HTMLNodeWrapper)other).docWrapper == docWrapper &&
+                nodeKind != Type.ATTRIBUTE && ((HTMLNodeWrapper)other).nodeKind != Type.ATTRIBUTE) {
+            // use the document's preorder numbering if it is available
+            int s1 = docWrapper.getSequenceNumber(node);
+            if (s1 >= 0) {
+                int s2 = docWrapper.getSequenceNumber(((HTMLNodeWrapper)other).node);
+                if (s2 >= 0) {
+                    return (s1 < s2 ? -1 : (s1 == s2 ? 0 : +1));
+                }
+            }
+        }
         if (other instanceof SiblingCountingNode) {
             return Navigator.compareOrder(this, (SiblingCountingNode)other);
         } else {
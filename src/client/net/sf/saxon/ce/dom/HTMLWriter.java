@@ -181,7 +181,9 @@ public class HTMLWriter implements Receiver {
     * End of the document.
     */
 
-    public void close () {}
+    public void close () {
+        HTMLDocumentWrapper.notifyMutation();
+    }
 
     /**
      * Start of a document node.
@@ -233,6 +235,7 @@ public class HTMLWriter implements Receiver {
         	} else {
         		element = (Element)document.getElementsByTagName(localName.toUpperCase()).getItem(0);
         		NodeList<Node> nodes = element.getChildNodes();
+        		HTMLDocumentWrapper.notifyMutation();
         		for (int n = 0; n < nodes.getLength(); n++) {
         			Node node = nodes.getItem(n);
         			node.removeFromParent();
@@ -536,6 +539,7 @@ public class HTMLWriter implements Receiver {
             return;
         }
         currentNode = node;
+        HTMLDocumentWrapper.notifyMutation();
         if (node.getNodeType() == Node.DOCUMENT_NODE) {
             document = (Document)node;
         } else {
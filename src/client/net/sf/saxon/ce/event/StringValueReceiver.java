@@ -0,0 +1,75 @@
+package client.net.sf.saxon.ce.event;
+
+import client.net.sf.saxon.ce.om.NamespaceBinding;
+import client.net.sf.saxon.ce.trans.XPathException;
+import client.net.sf.saxon.ce.tree.util.FastStringBuffer;
+
+/**
+ * A Receiver that computes the string value of the tree that would be built from the events it
+ * receives, without building the tree. Character data is accumulated, and all other events are
+ * ignored. This is used when a temporary tree is needed only for its string value, for example
+ * when all references to an xsl:variable atomize the value of the variable.
+ */
+
+public class StringValueReceiver implements Receiver {
+
+    private PipelineConfiguration pipe;
+    private String systemId;
+    private FastStringBuffer buffer = new FastStringBuffer(FastStringBuffer.MEDIUM);
+
+    public void setPipelineConfiguration(PipelineConfiguration pipe) {
+        this.pipe = pipe;
+    }
+
+    public PipelineConfiguration getPipelineConfiguration() {
+        return pipe;
+    }
+
+    public void setSystemId(String systemId) {
+        this.systemId = systemId;
+    }
+
+    public String getSystemId() {
+        return systemId;
+    }
+
+    public void open() {}
+
+    public void startDocument() {}
+
+    public void endDocument() {}
+
+    public void startElement(int nameCode, int properties) {}
+
+    public void namespace(NamespaceBinding nsBinding, int properties) {}
+
+    public void attribute(int nameCode, CharSequence value) {}
+
+    public void startContent() {}
+
+    public void endElement() {}
+
+    public void characters(CharSequence chars) throws XPathException {
+        buffer.append(chars);
+    }
+
+    public void processingInstruction(String name, CharSequence data) {}
+
+    public void comment(CharSequence content) {}
+
+    public void close() {}
+
+    /**
+     * Get the string value of the tree
+     * @return the concatenation of all the character data received
+     */
+
+    public String getStringValue() {
+        return buffer.toString();
+    }
+
+}
+
+// This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+// If a copy of the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+// This Source Code Form is “Incompatible With Secondary Licenses”, as defined by the Mozilla Public License, v. 2.0.
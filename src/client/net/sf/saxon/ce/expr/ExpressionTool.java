@@ -4,6 +4,7 @@ import client.net.sf.saxon.ce.Configuration;
 import client.net.sf.saxon.ce.Controller;
 import client.net.sf.saxon.ce.event.PipelineConfiguration;
 import client.net.sf.saxon.ce.event.SequenceOutputter;
+import client.net.sf.saxon.ce.expr.instruct.*;
 import client.net.sf.saxon.ce.expr.instruct.SlotManager;
 import client.net.sf.saxon.ce.functions.Current;
 import client.net.sf.saxon.ce.lib.NamespaceConstant;
@@ -140,6 +141,12 @@ public class ExpressionTool {
             return CALL_EVALUATE_ITEM;
                 // evaluateItem() on an error expression throws the latent exception
 
+        } else if (exp instanceof DocumentInstr && !((DocumentInstr)exp).isTextOnly() &&
+                !((DocumentInstr)exp).isStringValueOnly() && !containsSideEffects(exp)) {
+            // a temporary tree is built only when the variable is first used, and not at all
+            // if the variable is never used, or is only passed on to another template or function
+            return MAKE_SINGLETON_CLOSURE;
+
         } else if (!Cardinality.allowsMany(exp.getCardinality())) {
             // singleton expressions are always evaluated eagerly
             return eagerEvaluationMode(exp);
@@ -150,6 +157,33 @@ public class ExpressionTool {
         }
     }
 
+    /**
+     * Determine whether an expression, or any of its subexpressions, may have side effects
+     * (for example, an ixsl:set-attribute instruction). Such an expression must not be evaluated
+     * lazily, because that would change the order in which the side effects occur. Calls on
+     * templates and functions are assumed to have side effects, since the called code is not examined,
+     * and so is xsl:message.
+     * @param exp the expression to be tested
+     * @return true if the expression or one of its subexpressions may have side effects
+     */
+
+    private static boolean containsSideEffects(Expression exp) {
+        // the HAS_SIDE_EFFECTS property is not propagated from an expression to its parent
+        if ((exp.getSpecialProperties() & StaticProperty.HAS_SIDE_EFFECTS) != 0) {
+            return true;
+        }
+        if (exp instanceof CallTemplate || exp instanceof ApplyTemplates || exp instanceof ApplyImports ||
+                exp instanceof NextMatch || exp instanceof UserFunctionCall || exp instanceof Message) {
+            return true;
+        }
+        for (Iterator children = exp.iterateSubExpressions(); children.hasNext();) {
+            if (containsSideEffects((Expression)children.next())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Determine the method of evaluation to be used when lazy evaluation of an expression is
      * preferred. This method is called at compile time, after all optimizations have been done,
@@ -0,0 +1,136 @@
+package client.net.sf.saxon.ce.expr;
+
+import client.net.sf.saxon.ce.om.Item;
+import client.net.sf.saxon.ce.om.NodeInfo;
+import client.net.sf.saxon.ce.om.SequenceIterator;
+import client.net.sf.saxon.ce.trans.XPathException;
+import client.net.sf.saxon.ce.tree.wrapper.VirtualNode;
+import client.net.sf.saxon.ce.type.Type;
+
+import java.util.HashSet;
+
+/**
+ * An enumeration representing the union, intersection, or difference of two sequences of nodes,
+ * computed using a hash set rather than by merging two sequences in document order. The nodes are
+ * returned without duplicates, but in no particular order. This is used in place of
+ * {@link UnionEnumeration}, {@link IntersectionEnumeration}, and {@link DifferenceEnumeration} when the
+ * containing expression does not require the result to be in document order (for example, the argument
+ * of count() or exists()), because it avoids the need to sort the operands, and comparing the document
+ * order of nodes from different parts of a tree can be expensive.
+ */
+
+public class HashedVennEnumeration implements SequenceIterator {
+
+    private SequenceIterator p1;
+    private SequenceIterator p2;
+    private SequenceIterator e1;
+    private SequenceIterator e2;
+    private int operator;
+    private HashSet<Object> seen = null;
+
+    private NodeInfo current = null;
+    private int position = 0;
+
+    /**
+     * Form an enumeration of the union, intersection, or difference of the nodes in two sequences
+     * @param p1 the first operand, in any order
+     * @param operator one of {@link Token#UNION}, {@link Token#INTERSECT}, or {@link Token#EXCEPT}
+     * @param p2 the second operand, in any order
+     */
+
+    public HashedVennEnumeration(SequenceIterator p1, int operator, SequenceIterator p2) {
+        this.p1 = p1;
+        this.p2 = p2;
+        e1 = p1;
+        e2 = p2;
+        this.operator = operator;
+    }
+
+    /**
+     * Get the key used to identify a node in the hash set. For a wrapper around a node in another
+     * tree, such as a node in the HTML page, this is the wrapped node: wrapper objects are not unique,
+     * and their hash codes are expensive to compute.
+     * @param node the node
+     * @return an object that is equal to the key of another node if and only if the two nodes are
+     * the same node
+     */
+
+    private static Object getKey(NodeInfo node) {
+        if (node instanceof VirtualNode) {
+            int kind = node.getNodeKind();
+            if (kind != Type.ATTRIBUTE && kind != Type.NAMESPACE) {
+                return ((VirtualNode)node).getRealNode();
+            }
+        }
+        return node;
+    }
+
+    public Item next() throws XPathException {
+        if (seen == null) {
+            seen = new HashSet<Object>(64);
+            if (operator != Token.UNION) {
+                // index the nodes in the second operand
+                while (true) {
+                    NodeInfo node = (NodeInfo)e2.next();
+                    if (node == null) {
+                        break;
+                    }
+                    seen.add(getKey(node));
+                }
+            }
+        }
+        if (position >= 0) {
+            while (true) {
+                NodeInfo node = (NodeInfo)e1.next();
+                if (node == null && operator == Token.UNION && e2 != null) {
+                    e1 = e2;
+                    e2 = null;
+                    continue;
+                }
+                if (node == null) {
+                    break;
+                }
+                Object key = getKey(node);
+                boolean wanted;
+                switch (operator) {
+                    case Token.INTERSECT:
+                        // removing the key ensures that each node is returned only once
+                        wanted = seen.remove(key);
+                        break;
+                    default:
+                        // for except, the set holds the nodes of the second operand and those already returned
+                        wanted = seen.add(key);
+                        break;
+                }
+                if (wanted) {
+                    current = node;
+                    position++;
+                    return current;
+                }
+            }
+        }
+        current = null;
+        position = -1;
+        return null;
+    }
+
+    public Item current() {
+        return current;
+    }
+
+    public int position() {
+        return position;
+    }
+
+    public SequenceIterator getAnother() throws XPathException {
+        return new HashedVennEnumeration(p1.getAnother(), operator, p2.getAnother());
+    }
+
+    public int getProperties() {
+        return 0;
+    }
+}
+
+// This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+// If a copy of the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+// This Source Code Form is “Incompatible With Secondary Licenses”, as defined by the Mozilla Public License, v. 2.0.
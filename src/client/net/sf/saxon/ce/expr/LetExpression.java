@@ -150,8 +150,9 @@ public class LetExpression extends Assignation implements TailCallReturner {
 
         // if this is an XSLT construct of the form <xsl:variable>text</xsl:variable>, try to replace
         // it by <xsl:variable select=""/>. This can be done if all the references to the variable use
-        // its value as a string (rather than, say, as a node or as a boolean)
-        if (sequence instanceof DocumentInstr && ((DocumentInstr) sequence).isTextOnly()) {
+        // its value as a string (rather than, say, as a node or as a boolean). If the content is not
+        // just text, the value is still computed as a string, but without building the temporary tree
+        if (sequence instanceof DocumentInstr && !((DocumentInstr) sequence).isStringValueOnly()) {
             if (allReferencesAreFlattened()) {
                 sequence = ((DocumentInstr) sequence).getStringValueExpression(env);
                 requiredType = SequenceType.SINGLE_UNTYPED_ATOMIC;
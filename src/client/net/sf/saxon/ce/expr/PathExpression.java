@@ -107,6 +107,20 @@ public final class PathExpression extends SlashExpression implements ContextMapp
         }
     }
 
+    /**
+     * Get the axis of an axis step with optional filter predicates
+     * @param exp the expression to be examined
+     * @return the axis, if the supplied expression is an AxisExpression, or an AxisExpression wrapped by
+     *         one or more filter expressions; otherwise -1
+     */
+
+    private static int getFilteredAxis(Expression exp) {
+        while (exp instanceof FilterExpression) {
+            exp = ((FilterExpression)exp).getControllingExpression();
+        }
+        return (exp instanceof AxisExpression ? ((AxisExpression)exp).getAxis() : -1);
+    }
+
     /**
      * Simplify an expression
      * @param visitor the expression visitor
@@ -476,6 +490,13 @@ public final class PathExpression extends SlashExpression implements ContextMapp
         // We know now that both the start and the step are sorted. But this does
         // not necessarily mean that the combination is sorted.
 
+        // The result is sorted if the step selects nothing other than the context node, as
+        // in $nodes/. or $nodes/self::x[@y]
+
+        if (step instanceof ContextItemExpression || getFilteredAxis(step) == Axis.SELF) {
+            return true;
+        }
+
         // The result is sorted if the start is sorted and the step selects attributes
         // or namespaces
 
@@ -511,9 +532,10 @@ public final class PathExpression extends SlashExpression implements ContextMapp
         // nodes in document order is an expensive operation.
 
 
-        if (!Cardinality.allowsMany(start.getCardinality()) &&
-                (step instanceof AxisExpression)) {
-            return !Axis.isForwards[((AxisExpression)step).getAxis()];
+        // Filtering the nodes on an axis (for example ancestor::section[@id]) retains their order
+
+        if (!Cardinality.allowsMany(start.getCardinality()) && isFilteredAxisPath(step)) {
+            return !Axis.isForwards[getFilteredAxis(step)];
         }
 
         return !Cardinality.allowsMany(step.getCardinality()) &&
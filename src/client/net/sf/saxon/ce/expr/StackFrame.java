@@ -14,6 +14,7 @@ public class StackFrame {
     protected SlotManager map;
     protected ValueRepresentation[] slots;
     protected Stack<ValueRepresentation> dynamicStack;
+    protected boolean pooled = false;
 
     public StackFrame (SlotManager map, ValueRepresentation[] slots) {
         this.map = map;
@@ -32,6 +33,16 @@ public class StackFrame {
         slots = values;
     }
 
+    /**
+     * Ask whether the array holding the variables was obtained from the {@link StackFramePool},
+     * in which case it will be reused once the template or function that owns it has finished
+     * @return true if the variables are held in a pooled array
+     */
+
+    public boolean isPooled() {
+        return pooled;
+    }
+
     public StackFrame copy() {
         ValueRepresentation[] v2 = new ValueRepresentation[slots.length];
         System.arraycopy(slots, 0, v2, 0, slots.length);
@@ -0,0 +1,97 @@
+package client.net.sf.saxon.ce.expr;
+
+import client.net.sf.saxon.ce.om.ValueRepresentation;
+
+import java.util.Arrays;
+
+/**
+ * A pool of arrays used to hold the local variables of templates and functions, owned by the Controller.
+ * A template or function invocation takes an array from the pool when it starts and returns it when it
+ * finishes, so that a transformation that makes millions of calls reuses a small number of arrays
+ * (at most one per level of nesting) rather than allocating one for each call.
+ *
+ * <p>An array must only be returned to the pool when nothing else can refer to it. A stack frame whose
+ * array came from the pool is marked as pooled, and a {@link client.net.sf.saxon.ce.value.Closure} created
+ * while such a frame is in use always takes a private copy of the variables it needs (see
+ * {@link client.net.sf.saxon.ce.value.Closure#saveContext}).</p>
+ */
+
+public class StackFramePool {
+
+    // arrays larger than this are not pooled
+    private static final int MAX_SIZE = 32;
+
+    // the number of free arrays retained for each size
+    private static final int MAX_FREE = 16;
+
+    private ValueRepresentation[][][] free = new ValueRepresentation[MAX_SIZE + 1][][];
+    private int[] freeCount = new int[MAX_SIZE + 1];
+    private int allocated = 0;
+    private int reused = 0;
+
+    /**
+     * Get an array to hold the local variables of a template or function
+     * @param size the number of slots required
+     * @return an array of the required size, all of whose entries are null
+     */
+
+    public ValueRepresentation[] allocate(int size) {
+        if (size <= MAX_SIZE && freeCount[size] > 0) {
+            reused++;
+            ValueRepresentation[] slots = free[size][--freeCount[size]];
+            free[size][freeCount[size]] = null;
+            return slots;
+        }
+        allocated++;
+        return new ValueRepresentation[size];
+    }
+
+    /**
+     * Return an array to the pool. The caller must ensure that the array is no longer in use.
+     * @param slots the array to be returned
+     */
+
+    public void release(ValueRepresentation[] slots) {
+        int size = slots.length;
+        if (size == 0 || size > MAX_SIZE || freeCount[size] == MAX_FREE) {
+            return;
+        }
+        Arrays.fill(slots, null);
+        if (free[size] == null) {
+            free[size] = new ValueRepresentation[MAX_FREE][];
+        }
+        free[size][freeCount[size]++] = slots;
+    }
+
+    /**
+     * Get the number of arrays that have been newly allocated since the counters were reset
+     * @return the number of allocations
+     */
+
+    public int getAllocationCount() {
+        return allocated;
+    }
+
+    /**
+     * Get the number of arrays that have been supplied from the pool since the counters were reset
+     * @return the number of arrays reused
+     */
+
+    public int getReuseCount() {
+        return reused;
+    }
+
+    /**
+     * Reset the allocation counters
+     */
+
+    public void resetCounters() {
+        allocated = 0;
+        reused = 0;
+    }
+
+}
+
+// This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+// If a copy of the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+// This Source Code Form is “Incompatible With Secondary Licenses”, as defined by the Mozilla Public License, v. 2.0.
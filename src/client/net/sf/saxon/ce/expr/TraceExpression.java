@@ -21,6 +21,8 @@ import client.net.sf.saxon.ce.trans.XPathException;
 import client.net.sf.saxon.ce.trans.update.PendingUpdateList;
 import client.net.sf.saxon.ce.type.ItemType;
 import client.net.sf.saxon.ce.type.TypeHierarchy;
+import client.net.sf.saxon.ce.value.SequenceExtent;
+import client.net.sf.saxon.ce.value.Value;
 
 /**
  * A wrapper expression used to trace expressions in XPath and XQuery.
@@ -373,7 +375,12 @@ public class TraceExpression extends Instruction implements InstructionInfo {
     	SequenceIterator result;
     	if (LogConfiguration.loggingIsEnabled() && LogController.traceIsEnabled()) {
     		LogController.getTraceListener().enter(getInstructionInfo(), context);
-    		result = child.iterate(context);
+    		if (LogController.profilingIsEnabled()) {
+    			// evaluate eagerly, so that the time is attributed to this function rather than its caller
+    			result = Value.asIterator(SequenceExtent.makeSequenceExtent(child.iterate(context)));
+    		} else {
+    			result = child.iterate(context);
+    		}
     		LogController.getTraceListener().leave(getInstructionInfo());
     		
     	} else {
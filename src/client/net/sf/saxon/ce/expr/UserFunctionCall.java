@@ -260,16 +260,20 @@ public class UserFunctionCall extends FunctionCall {
      * @throws XPathException if dynamic errors occur
      */
     private ValueRepresentation callFunction(XPathContext c) throws XPathException {
-        ValueRepresentation[] actualArgs = evaluateArguments(c);
-
         if (tailCall) {
-            ((XPathContextMajor)c).requestTailCall(function, actualArgs);
+            ((XPathContextMajor)c).requestTailCall(function, evaluateArguments(c));
             return EmptySequence.getInstance();
         }
 
         XPathContextMajor c2 = c.newCleanContext();
         c2.setTemporaryOutputState(true);
-        return function.call(actualArgs, c2);
+        c2.openPooledStackFrame(function.getStackFrameMap());
+        try {
+            evaluateArguments(c, c2.getStackFrame().getStackFrameValues());
+            return function.call(c2);
+        } finally {
+            c2.releaseStackFrame();
+        }
     }
 
     /**
@@ -279,21 +283,39 @@ public class UserFunctionCall extends FunctionCall {
      */
 
     public void process(XPathContext context) throws XPathException {
-        ValueRepresentation[] actualArgs = evaluateArguments(context);
         if (tailCall) {
-            ((XPathContextMajor)context).requestTailCall(function, actualArgs);
+            ((XPathContextMajor)context).requestTailCall(function, evaluateArguments(context));
         } else {
             SequenceReceiver out = context.getReceiver();
             XPathContextMajor c2 = context.newCleanContext();
             c2.setReceiver(out);
-            function.process(actualArgs, c2);
+            c2.openPooledStackFrame(function.getStackFrameMap());
+            try {
+                evaluateArguments(context, c2.getStackFrame().getStackFrameValues());
+                function.process(c2);
+            } finally {
+                c2.releaseStackFrame();
+            }
         }
     }
 
 
     private ValueRepresentation[] evaluateArguments(XPathContext c) throws XPathException {
+        ValueRepresentation[] actualArgs = new ValueRepresentation[argument.length];
+        evaluateArguments(c, actualArgs);
+        return actualArgs;
+    }
+
+    /**
+     * Evaluate the arguments of the function call
+     * @param c the dynamic context of the caller
+     * @param actualArgs an array to which the values of the arguments are written, starting at
+     * the first slot; it may be larger than the number of arguments
+     * @throws XPathException if a dynamic error occurs evaluating an argument
+     */
+
+    private void evaluateArguments(XPathContext c, ValueRepresentation[] actualArgs) throws XPathException {
         int numArgs = argument.length;
-        ValueRepresentation[] actualArgs = new ValueRepresentation[numArgs];
         if (argumentEvaluationModes == null) {
             // should have been done at compile time
             computeArgumentEvaluationModes();
@@ -312,7 +334,6 @@ public class UserFunctionCall extends FunctionCall {
                 actualArgs[i] = ((Closure)actualArgs[i]).reduce();
             }
         }
-        return actualArgs;
     }
 
     /**
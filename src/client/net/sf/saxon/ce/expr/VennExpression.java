@@ -24,6 +24,8 @@ import java.util.Set;
 
 public class VennExpression extends BinaryExpression {
 
+    private boolean unordered = false;
+
     /**
     * Constructor
     * @param p1 the left-hand operand
@@ -83,7 +85,8 @@ public class VennExpression extends BinaryExpression {
     public int computeSpecialProperties() {
         final int prop0 = operand0.getSpecialProperties();
         final int prop1 = operand1.getSpecialProperties();
-        int props = StaticProperty.ORDERED_NODESET;
+        // once the result is computed using a hash table, it is no longer in document order
+        int props = (unordered ? 0 : StaticProperty.ORDERED_NODESET);
         if (testContextDocumentNodeSet(prop0, prop1)) {
             props |= StaticProperty.CONTEXT_DOCUMENT_NODESET;
         }
@@ -349,6 +352,34 @@ public class VennExpression extends BinaryExpression {
         return this;
     }
 
+    /**
+     * Promote this expression if possible. An offer of type UNORDERED indicates that the result is not
+     * required in document order, in which case the result is computed using a hash table, and the
+     * operands need not be sorted.
+     */
+
+    public Expression promote(PromotionOffer offer, Expression parent) throws XPathException {
+        Expression exp = offer.accept(parent, this);
+        if (exp != null) {
+            return exp;
+        }
+        if (offer.action == PromotionOffer.UNORDERED) {
+            unordered = true;
+            // the result is no longer known to be sorted, so the cached properties of this
+            // expression and its ancestors must be recomputed
+            resetLocalStaticProperties();
+            offer.accepted = true;
+            // duplicates in the operands are eliminated anyway
+            boolean retainAllNodes = offer.retainAllNodes;
+            offer.retainAllNodes = false;
+            operand0 = doPromotion(operand0, offer);
+            operand1 = doPromotion(operand1, offer);
+            offer.retainAllNodes = retainAllNodes;
+            return this;
+        }
+        return super.promote(offer, parent);
+    }
+
     /**
     * Is this expression the same as another expression?
     */
@@ -387,6 +418,9 @@ public class VennExpression extends BinaryExpression {
     */
 
     public SequenceIterator iterate(final XPathContext c) throws XPathException {
+        if (unordered) {
+            return new HashedVennEnumeration(operand0.iterate(c), operator, operand1.iterate(c));
+        }
         SequenceIterator i1 = operand0.iterate(c);
         //return Type.isNodeType(getItemType()) && isSingleton();
         // this is a sufficient condition, but other expressions override this method
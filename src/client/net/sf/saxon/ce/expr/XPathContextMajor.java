@@ -33,6 +33,7 @@ public class XPathContextMajor extends XPathContextMinor {
     private Rule currentTemplate;
     private GroupIterator currentGroupIterator;
     private RegexIterator currentRegexIterator;
+    private boolean reusableForTailCall = false;
 
     /**
      * Constructor should only be called by the Controller,
@@ -125,6 +126,40 @@ public class XPathContextMajor extends XPathContextMinor {
         return c;
     }
 
+    /**
+     * Create a new major context in which to perform a tail call, that is, a call on xsl:call-template
+     * or xsl:apply-templates that is the last instruction executed by a template. The template making
+     * the call has finished executing, so the new context is linked to the caller of that template
+     * rather than to the template's own context. This means that the chain of contexts does not
+     * grow with the depth of recursion.
+     * @param prev the context of the instruction making the tail call
+     * @param reusable true if the new context will be used only to execute the body of a template
+     * invoked by xsl:call-template, in which case it may be reused for a further tail call made by
+     * that template (see {@link #reopenStackFrame})
+     * @return the new major context
+     */
+
+    public static XPathContextMajor newTailCallContext(XPathContext prev, boolean reusable) {
+        XPathContextMajor c = prev.newContext();
+        XPathContext p = prev;
+        while (!(p instanceof XPathContextMajor)) {
+            p = p.getCaller();
+        }
+        c.caller = p.getCaller();
+        c.reusableForTailCall = reusable;
+        return c;
+    }
+
+    /**
+     * Ask whether this context was created for a tail call on xsl:call-template, and can therefore be
+     * reused for a further tail call once the template body has finished executing
+     * @return true if the context can be reused for a tail call
+     */
+
+    public boolean isReusableForTailCall() {
+        return reusableForTailCall;
+    }
+
     /**
      *
      */
@@ -335,6 +370,51 @@ public class XPathContextMajor extends XPathContextMinor {
         }
     }
 
+    /**
+     * Create a new stack frame for local variables, taking the array that holds the variables from the
+     * Controller's {@link StackFramePool}. The caller must call {@link #releaseStackFrame} when the
+     * template or function that uses the frame has finished, unless the frame may still be needed
+     * (for example, by a tail call that has not yet been processed).
+     * @param map the SlotManager for the new stack frame
+     */
+
+    public void openPooledStackFrame(SlotManager map) {
+        int numberOfSlots = map.getNumberOfVariables();
+        if (numberOfSlots == 0) {
+            stackFrame = StackFrame.EMPTY;
+        } else {
+            stackFrame = new StackFrame(map, controller.getStackFramePool().allocate(numberOfSlots));
+            stackFrame.pooled = true;
+        }
+    }
+
+    /**
+     * Return the array holding the local variables to the Controller's {@link StackFramePool}, if it
+     * came from there. After this call the stack frame holds no variables.
+     */
+
+    public void releaseStackFrame() {
+        if (stackFrame.pooled) {
+            controller.getStackFramePool().release(stackFrame.slots);
+            stackFrame.slots = ValueRepresentation.EMPTY_VALUE_ARRAY;
+            stackFrame.pooled = false;
+            stackFrame = StackFrame.EMPTY;
+        }
+    }
+
+    /**
+     * Prepare the stack frame for a tail call. This is used when one template makes a tail call on another
+     * (or on itself), in which case the context is reused, so a chain of tail calls runs in constant space.
+     * The variables of the calling template are no longer needed, but its stack frame cannot be reused:
+     * a parameter of the tail call may be a Closure that shares the frame in order to bind variables of
+     * its own, so a new frame is always allocated.
+     * @param map the SlotManager for the called template
+     */
+
+    public void reopenStackFrame(SlotManager map) {
+        openStackFrame(map);
+    }
+
     /**
      * Create a new stack frame large enough to hold a given number of local variables,
      * for which no stack frame map is available. This is used in particular when evaluating
@@ -179,7 +179,7 @@ public class ApplyTemplates extends Instruction {
         ParameterSet tunnels = assembleTunnelParams(context, tunnelParams);
 
         if (returnTailCall) {
-            XPathContextMajor c2 = context.newContext();
+            XPathContextMajor c2 = XPathContextMajor.newTailCallContext(context, false);
             return new ApplyTemplatesPackage(
                     ExpressionTool.lazyEvaluate(select, context, 1),
                     thisMode, params, tunnels, c2, getSourceLocator());
@@ -250,51 +250,67 @@ public class ApplyTemplates extends Instruction {
         context.setCurrentIterator(iterator);
         context.setCurrentMode(mode);
         Template previousTemplate = null;
-        while(true) {
+        boolean ownStackFrame = false;      // true once we have opened a stack frame of our own
+        boolean completed = false;
+        try {
+            while(true) {
 
-            // process any tail calls returned from previous nodes. We need to do this before changing
-            // the context. We need to execute the outstanding tail calls before moving the iterator
+                // process any tail calls returned from previous nodes. We need to do this before changing
+                // the context. We need to execute the outstanding tail calls before moving the iterator
 
-            if (tc != null) {
-                do {
-                    tc = tc.processLeavingTail();
-                } while (tc != null);
-            }
-
-            NodeInfo node = (NodeInfo)iterator.next();
-                    // We can assume it's a node - we did static type checking
-            if (node == null) {
-                break;
-            }
+                if (tc != null) {
+                    do {
+                        tc = tc.processLeavingTail();
+                    } while (tc != null);
+                }
 
-            // find the template rule for this node
+                NodeInfo node = (NodeInfo)iterator.next();
+                        // We can assume it's a node - we did static type checking
+                if (node == null) {
+                    break;
+                }
 
-            Rule rule = mode.getRule(node, context);
-            if (rule==null) {
-            	rule = mode.getVirtualRule(context);
-            }
+                // find the template rule for this node
 
-            if (rule==null) {
-            	// Use the default action for the node
-                // No need to open a new stack frame!
-                mode.getBuiltInRuleSet().process(node, parameters, tunnelParameters, context, sourceLocator);
-            } else {
-                Template template = (Template)rule.getAction();
-                if (template != previousTemplate) {
-                    // Reuse the previous stackframe unless it's a different template rule
-                    previousTemplate = template;
-                    context.openStackFrame(template.getStackFrameMap());
-                    context.setLocalParameters(parameters);
-                    context.setTunnelParameters(tunnelParameters);
+                Rule rule = mode.getRule(node, context);
+                if (rule==null) {
+                	rule = mode.getVirtualRule(context);
                 }
-                context.setCurrentTemplateRule(rule);
-                if (rule.isVirtual()){
-                	SequenceIterator iter = IXSLFunction.convertFromJavaScript(context.getController().getUserData("Saxon-CE", "current-object"), 
-                			context.getConfiguration());
-                	iter.next(); // position on the item;
-                    context.setCurrentIterator(iter);
+
+                if (rule==null) {
+                	// Use the default action for the node
+                    // No need to open a new stack frame!
+                    mode.getBuiltInRuleSet().process(node, parameters, tunnelParameters, context, sourceLocator);
+                } else {
+                    Template template = (Template)rule.getAction();
+                    if (template != previousTemplate) {
+                        // Reuse the previous stackframe unless it's a different template rule. Any tail call
+                        // from the previous template has been processed, so its frame can go back to the pool
+                        previousTemplate = template;
+                        if (ownStackFrame) {
+                            context.releaseStackFrame();
+                        }
+                        context.openPooledStackFrame(template.getStackFrameMap());
+                        ownStackFrame = true;
+                        context.setLocalParameters(parameters);
+                        context.setTunnelParameters(tunnelParameters);
+                    }
+                    context.setCurrentTemplateRule(rule);
+                    if (rule.isVirtual()){
+                    	SequenceIterator iter = IXSLFunction.convertFromJavaScript(context.getController().getUserData("Saxon-CE", "current-object"), 
+                    			context.getConfiguration());
+                    	iter.next(); // position on the item;
+                        context.setCurrentIterator(iter);
+                    }
+                    tc = template.applyLeavingTail(context);
                 }
-                tc = template.applyLeavingTail(context);
+            }
+            completed = true;
+        } finally {
+            // the stack frame is still needed if there is an outstanding tail call, but not if a
+            // dynamic error has been thrown
+            if (ownStackFrame && (tc == null || !completed)) {
+                context.releaseStackFrame();
             }
         }
 
@@ -216,13 +216,17 @@ public class CallTemplate extends Instruction {
 
         Template t = getTargetTemplate();
         XPathContextMajor c2 = context.newContext();
-        c2.openStackFrame(t.getStackFrameMap());
-        c2.setLocalParameters(assembleParams(context, actualParams));
-        c2.setTunnelParameters(assembleTunnelParams(context, tunnelParams));
-
-        TailCall tc = t.expand(c2);
-        while (tc != null) {
-            tc = tc.processLeavingTail();
+        c2.openPooledStackFrame(t.getStackFrameMap());
+        try {
+            c2.setLocalParameters(assembleParams(context, actualParams));
+            c2.setTunnelParameters(assembleTunnelParams(context, tunnelParams));
+
+            TailCall tc = t.expand(c2);
+            while (tc != null) {
+                tc = tc.processLeavingTail();
+            }
+        } finally {
+            c2.releaseStackFrame();
         }
     }
 
@@ -327,14 +331,20 @@ public class CallTemplate extends Instruction {
         */
 
         public TailCall processLeavingTail() throws XPathException {
-            // TODO: the idea of tail call optimization is to reuse the caller's stack frame rather than
-            // creating a new one. We're doing this for the Java stack, but not for the context stack where
-            // local variables are held. It should be possible to avoid creating a new context, and instead
-            // to update the existing one in situ.
-            XPathContextMajor c2 = evaluationContext.newContext();
+            // If the calling template was itself entered by a tail call, its context is no longer needed
+            // and is reused, with a new stack frame; otherwise a context is created that does
+            // not refer back to the caller's context. Either way, a chain of tail calls runs in constant space.
+            XPathContextMajor c2;
+            if (evaluationContext instanceof XPathContextMajor &&
+                    ((XPathContextMajor)evaluationContext).isReusableForTailCall()) {
+                c2 = (XPathContextMajor)evaluationContext;
+                c2.reopenStackFrame(target.getStackFrameMap());
+            } else {
+                c2 = XPathContextMajor.newTailCallContext(evaluationContext, true);
+                c2.openStackFrame(target.getStackFrameMap());
+            }
             c2.setLocalParameters(params);
             c2.setTunnelParameters(tunnelParams);
-            c2.openStackFrame(target.getStackFrameMap());
 
             // System.err.println("Tail call on template");
 
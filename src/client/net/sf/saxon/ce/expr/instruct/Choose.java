@@ -608,7 +608,7 @@ public class Choose extends Instruction {
     
     private void enterConditionTrace(int i) {
     	if (LogConfiguration.loggingIsEnabled() && LogController.traceIsEnabled()) {
-			if(conditionTests != null) {
+			if(conditionTests != null && LogController.getTraceListener() instanceof XSLTTraceListener) {
 	      	   XSLTTraceListener xlt = (XSLTTraceListener)LogController.getTraceListener();
 	      	   xlt.enterChooseItem(conditionTests[i]);
 	 		}
@@ -617,7 +617,7 @@ public class Choose extends Instruction {
     
     private void leaveConditionTrace(int i) {
     	if (LogConfiguration.loggingIsEnabled() && LogController.traceIsEnabled()) {
-	 	   if(conditionTests != null) {
+	 	   if(conditionTests != null && LogController.getTraceListener() instanceof XSLTTraceListener) {
 	      	   XSLTTraceListener xlt = (XSLTTraceListener)LogController.getTraceListener();
 	      	   xlt.leaveChooseItem(conditionTests[i]);
 		   }
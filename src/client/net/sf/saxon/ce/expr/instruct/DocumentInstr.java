@@ -5,16 +5,18 @@ import client.net.sf.saxon.ce.event.Builder;
 import client.net.sf.saxon.ce.event.PipelineConfiguration;
 import client.net.sf.saxon.ce.event.Receiver;
 import client.net.sf.saxon.ce.event.SequenceReceiver;
+import client.net.sf.saxon.ce.event.StringValueReceiver;
 import client.net.sf.saxon.ce.expr.*;
 import client.net.sf.saxon.ce.functions.StringJoin;
 import client.net.sf.saxon.ce.functions.SystemFunction;
 import client.net.sf.saxon.ce.om.DocumentInfo;
 import client.net.sf.saxon.ce.om.Item;
+import client.net.sf.saxon.ce.om.NodeInfo;
 import client.net.sf.saxon.ce.om.SequenceIterator;
 import client.net.sf.saxon.ce.om.StandardNames;
 import client.net.sf.saxon.ce.pattern.NodeKindTest;
 import client.net.sf.saxon.ce.trans.XPathException;
-import client.net.sf.saxon.ce.tree.util.FastStringBuffer;
+import client.net.sf.saxon.ce.tree.util.Rope;
 import client.net.sf.saxon.ce.type.BuiltInAtomicType;
 import client.net.sf.saxon.ce.type.ItemType;
 import client.net.sf.saxon.ce.type.TypeHierarchy;
@@ -41,6 +43,7 @@ public class DocumentInstr extends ParentNodeConstructor {
 
     private boolean textOnly;
     private String constantText;
+    private boolean stringValueOnly = false;
 
     /**
      * Create a document constructor instruction
@@ -93,10 +96,13 @@ public class DocumentInstr extends ParentNodeConstructor {
 
 
     /**
+     * Return an expression that evaluates to the string value of the document as an instance of xs:untypedAtomic.
      * In the case of a text-only instruction (xsl:variable containing a text node or one or more xsl:value-of
-     * instructions), return an expression that evaluates to the textual content as an instance of xs:untypedAtomic
+     * instructions), this is an expression that evaluates the textual content directly. In other cases it is a
+     * document instruction that evaluates its content in the usual way, but accumulates the character data
+     * instead of building a tree.
      * @param env the static evaluation context
-     * @return an expression that evaluates to the textual content
+     * @return an expression that evaluates to the string value of the document
      */
 
     public Expression getStringValueExpression(StaticContext env) {
@@ -113,10 +119,24 @@ public class DocumentInstr extends ParentNodeConstructor {
                 return cast;
             }
         } else {
-            throw new AssertionError("getStringValueExpression() called on non-text-only document instruction");
+            DocumentInstr doc = new DocumentInstr(false, null, getBaseURI());
+            doc.stringValueOnly = true;
+            doc.setContentExpression(content);
+            ExpressionTool.copyLocationInfo(this, doc);
+            return doc;
         }
     }
 
+    /**
+     * Ask whether this instruction delivers the string value of the document as an xs:untypedAtomic
+     * value, rather than the document node itself
+     * @return true if the instruction delivers the string value
+     */
+
+    public boolean isStringValueOnly() {
+        return stringValueOnly;
+    }
+
 
     /**
      * Get the item type
@@ -124,11 +144,15 @@ public class DocumentInstr extends ParentNodeConstructor {
      * @return the in
      */
     public ItemType getItemType(TypeHierarchy th) {
-        return NodeKindTest.DOCUMENT;
+        return (stringValueOnly ? BuiltInAtomicType.UNTYPED_ATOMIC : NodeKindTest.DOCUMENT);
     }
 
     public TailCall processLeavingTail(XPathContext context) throws XPathException {
         SequenceReceiver out = context.getReceiver();
+        if (stringValueOnly) {
+            out.append(evaluateItem(context), NodeInfo.ALL_NAMESPACES);
+            return null;
+        }
         out.startDocument();
         content.process(context);
         out.endDocument();
@@ -148,17 +172,36 @@ public class DocumentInstr extends ParentNodeConstructor {
             if (constantText != null) {
                 textValue = constantText;
             } else {
-                FastStringBuffer sb = new FastStringBuffer(FastStringBuffer.SMALL);
+                textValue = "";
                 SequenceIterator iter = content.iterate(context);
                 while (true) {
                     Item item = iter.next();
                     if (item==null) break;
-                    sb.append(item.getStringValueCS());
+                    textValue = Rope.concat(textValue, item.getStringValueCS());
                 }
-                textValue = sb.condense();
             }
             root = new TextFragmentValue(textValue, getBaseURI());
             ((TextFragmentValue)root).setConfiguration(controller.getConfiguration());
+        } else if (stringValueOnly) {
+            // Only the string value is needed, so the content is evaluated without building a tree. The
+            // content is still written through a ComplexContentOutputter, so errors are detected as before.
+            try {
+                XPathContext c2 = context.newMinorContext();
+                StringValueReceiver sv = new StringValueReceiver();
+                sv.setPipelineConfiguration(controller.makePipelineConfiguration());
+                c2.changeOutputDestination(sv, false);
+                Receiver out = c2.getReceiver();
+                out.open();
+                out.startDocument();
+                content.process(c2);
+                out.endDocument();
+                out.close();
+                return new UntypedAtomicValue(sv.getStringValue());
+            } catch (XPathException e) {
+                e.maybeSetLocation(getSourceLocator());
+                e.maybeSetContext(context);
+                throw e;
+            }
         } else {
             try {
                 XPathContext c2 = context.newMinorContext();
@@ -3,6 +3,7 @@ package client.net.sf.saxon.ce.expr.instruct;
 import client.net.sf.saxon.ce.LogController;
 import client.net.sf.saxon.ce.expr.*;
 import client.net.sf.saxon.ce.expr.sort.*;
+import client.net.sf.saxon.ce.functions.CurrentGroup;
 import client.net.sf.saxon.ce.lib.StringCollator;
 import client.net.sf.saxon.ce.lib.TraceListener;
 import client.net.sf.saxon.ce.om.Item;
@@ -43,6 +44,7 @@ public class ForEachGroup extends Instruction
     private StringCollator collator = null;             // collation used for the grouping comparisons
     private SortKeyDefinition[] sortKeys = null;
     private transient AtomicComparer[] sortComparators = null;    // comparators used for sorting the groups
+    private boolean streamable = false;     // true if the current group can be read directly from the population
 
     /**
      * Create a for-each-group instruction
@@ -193,9 +195,42 @@ public class ForEachGroup extends Instruction
                 dynamicError("Collation name '" + collationNameExpression + "' is not a valid URI", "XTDE1110", null);
             }
         }
+        // For the algorithms that form groups from consecutive items, the members of each group can be
+        // read directly from the population, without being saved, if the action reads the current group
+        // at most once
+        streamable = algorithm != GROUP_BY && sortKeys == null &&
+                countCurrentGroupReferences(action, false) <= 1;
         return this;
     }
 
+    /**
+     * Count the number of times the current group is read by an expression. This counts references
+     * to the current-group() function, other than references within the action of a nested
+     * xsl:for-each-group instruction, which refer to a different group. A reference within a
+     * loop counts as many.
+     * @param exp the expression to be examined
+     * @param inLoop true if the expression is evaluated repeatedly
+     * @return the number of references: the interesting values are 0, 1, and many (any value greater than 1)
+     */
+
+    private static int countCurrentGroupReferences(Expression exp, boolean inLoop) {
+        if (exp instanceof CurrentGroup) {
+            return (inLoop ? 10 : 1);
+        }
+        if ((exp.getDependencies() & StaticProperty.DEPENDS_ON_CURRENT_GROUP) == 0) {
+            return 0;
+        }
+        int count = 0;
+        for (Iterator iter = exp.iterateSubExpressions(); iter.hasNext();) {
+            Expression child = (Expression)iter.next();
+            if (exp instanceof ForEachGroup && child == ((ForEachGroup)exp).action) {
+                continue;
+            }
+            count += countCurrentGroupReferences(child, inLoop || exp.hasLoopingSubexpression(child));
+        }
+        return count;
+    }
+
 
     /**
      * Get the item type of the items returned by evaluating this instruction
@@ -485,6 +520,9 @@ public class ForEachGroup extends Instruction
             default:
                 throw new AssertionError("Unknown grouping algorithm");
         }
+        if (streamable) {
+            ((SequentialGroupIterator)groupIterator).setStreaming(true);
+        }
 
 
         // now iterate over the leading nodes of the groups
@@ -133,7 +133,7 @@ public class NextMatch extends ApplyImports {
 
         public TailCall processLeavingTail() throws XPathException {
             Template nh = rule.getAction();
-            XPathContextMajor c2 = evaluationContext.newContext();
+            XPathContextMajor c2 = XPathContextMajor.newTailCallContext(evaluationContext, false);
             c2.setLocalParameters(params);
             c2.setTunnelParameters(tunnelParams);
             c2.openStackFrame(nh.getStackFrameMap());
@@ -1,6 +1,7 @@
 package client.net.sf.saxon.ce.expr.instruct;
 
 import client.net.sf.saxon.ce.Configuration;
+import client.net.sf.saxon.ce.dom.HTMLDocumentWrapper;
 import client.net.sf.saxon.ce.expr.*;
 import client.net.sf.saxon.ce.expr.number.NumberFormatter;
 import client.net.sf.saxon.ce.functions.NumberFn;
@@ -12,6 +13,7 @@ import client.net.sf.saxon.ce.pattern.Pattern;
 import client.net.sf.saxon.ce.pattern.PatternSponsor;
 import client.net.sf.saxon.ce.trans.XPathException;
 import client.net.sf.saxon.ce.tree.util.Navigator;
+import client.net.sf.saxon.ce.tree.util.NumberingIndex;
 import client.net.sf.saxon.ce.type.*;
 import client.net.sf.saxon.ce.value.*;
 import client.net.sf.saxon.ce.value.StringValue;
@@ -488,20 +490,49 @@ public class NumberInstruction extends Expression {
                 source = (NodeInfo) item;
             }
 
+            // use an index of the document where the patterns allow it; -1 (or null) means no answer.
+            // Only the HTML page can change during a transformation, so other trees have a fixed version
+            NumberingIndex index = null;
+            if (!hasVariablesInPatterns) {
+                int treeVersion = (source.getRoot() instanceof HTMLDocumentWrapper ?
+                        HTMLDocumentWrapper.getMutationCount() : 0);
+                index = NumberingIndex.getIndex(this, source, count, from, treeVersion, context);
+            }
+            value = -1;
             if (level == SIMPLE) {
-                value = Navigator.getNumberSimple(source, context);
+                if (index != null) {
+                    value = index.getNumberSingle(source);
+                }
+                if (value < 0) {
+                    value = Navigator.getNumberSimple(source, context);
+                }
             } else if (level == SINGLE) {
-                value = Navigator.getNumberSingle(source, count, from, context);
+                if (index != null) {
+                    value = index.getNumberSingle(source);
+                }
+                if (value < 0) {
+                    value = Navigator.getNumberSingle(source, count, from, context);
+                }
                 if (value == 0) {
                     vec = Collections.EMPTY_LIST; 	// an empty list
                 }
             } else if (level == ANY) {
-                value = Navigator.getNumberAny(this, source, count, from, context, hasVariablesInPatterns);
+                if (index != null) {
+                    value = index.getNumberAny(source);
+                }
+                if (value < 0) {
+                    value = Navigator.getNumberAny(this, source, count, from, context, hasVariablesInPatterns);
+                }
                 if (value == 0) {
                     vec = Collections.EMPTY_LIST; 	// an empty list
                 }
             } else if (level == MULTI) {
-                vec = Navigator.getNumberMulti(source, count, from, context);
+                if (index != null) {
+                    vec = index.getNumberMulti(source);
+                }
+                if (vec == null) {
+                    vec = Navigator.getNumberMulti(source, count, from, context);
+                }
             }
         }
 
@@ -22,6 +22,7 @@ import client.net.sf.saxon.ce.sxpath.AbstractStaticContext;
 import client.net.sf.saxon.ce.trans.XPathException;
 import client.net.sf.saxon.ce.trans.update.DeleteAction;
 import client.net.sf.saxon.ce.trans.update.InsertAction;
+import client.net.sf.saxon.ce.trans.update.PatchContentAction;
 import client.net.sf.saxon.ce.trans.update.PendingUpdateList;
 import client.net.sf.saxon.ce.tree.iter.AxisIterator;
 import client.net.sf.saxon.ce.tree.iter.SingleNodeIterator;
@@ -62,6 +63,7 @@ public class ResultDocument extends Instruction  {
 
     public final static int APPEND_CONTENT = 0;
     public final static int REPLACE_CONTENT = 1;
+    public final static int PATCH_CONTENT = 2;
 
     /**
      * Create a result-document instruction
@@ -243,6 +245,18 @@ public class ResultDocument extends Instruction  {
             if ("replace-content".equals(methodQ.getLocalName())) {
                 // TODO: check the namespace URI is NamespaceConstant.IXSL
                 action = REPLACE_CONTENT;
+            } else if ("patch-content".equals(methodQ.getLocalName())) {
+                action = PATCH_CONTENT;
+            }
+        }
+        if (controller.isIncrementalUpdate() && command == APIcommand.UPDATE_HTML) {
+            if (action == REPLACE_CONTENT) {
+                action = PATCH_CONTENT;
+            }
+            // remember how to evaluate this instruction again if the source document changes. This is
+            // only possible if the new content replaces the old: appending it again would duplicate it
+            if (action == PATCH_CONTENT) {
+                controller.addResultRegion(this, context);
             }
         }
 
@@ -385,6 +399,11 @@ public class ResultDocument extends Instruction  {
         
         if (command == APIcommand.UPDATE_HTML){
 	        PendingUpdateList list = controller.getPendingUpdateList();
+	        if (action == PATCH_CONTENT) {
+	            // modify the existing content in place, matching elements by name and id
+	            list.add(new PatchContentAction(container, targetNode, "id"));
+	            return null;
+	        }
 	        if (action == REPLACE_CONTENT && command == APIcommand.UPDATE_HTML) {
 	        	int existingChildren = targetNode.getChildCount();
 	            for (int i=0; i<existingChildren; i++) {
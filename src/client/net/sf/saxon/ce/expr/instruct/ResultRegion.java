@@ -0,0 +1,103 @@
+package client.net.sf.saxon.ce.expr.instruct;
+
+import client.net.sf.saxon.ce.expr.StackFrame;
+import client.net.sf.saxon.ce.expr.StaticProperty;
+import client.net.sf.saxon.ce.expr.XPathContext;
+import client.net.sf.saxon.ce.expr.XPathContextMajor;
+import client.net.sf.saxon.ce.om.Item;
+import client.net.sf.saxon.ce.om.NodeInfo;
+import client.net.sf.saxon.ce.trans.XPathException;
+import client.net.sf.saxon.ce.tree.iter.SingletonIterator;
+import client.net.sf.saxon.ce.tree.iter.UnfailingIterator;
+import client.net.sf.saxon.ce.tree.util.Navigator;
+
+import java.util.List;
+
+/**
+ * A ResultRegion records an evaluation of an xsl:result-document instruction that updated the HTML page,
+ * so that the instruction can be evaluated again, in the same dynamic context, when the source document
+ * changes. The region is regarded as affected by a change to a source node if the context node of the
+ * xsl:result-document instruction is that node or one of its ancestors.
+ *
+ * <p>This is a coarse form of dependency tracking: it takes no account of anything the instruction reads
+ * outside the subtree rooted at its context node, for example through global variables, keys, or paths
+ * that navigate upwards. A caller that makes such changes should run the whole transformation again.</p>
+ */
+
+public class ResultRegion {
+
+    private ResultDocument instruction;
+    private NodeInfo contextNode;
+    private XPathContextMajor savedContext;
+
+    private ResultRegion() {}
+
+    /**
+     * Record an evaluation of an xsl:result-document instruction
+     * @param instruction the xsl:result-document instruction
+     * @param context the dynamic context in which it is being evaluated
+     * @return the ResultRegion, or null if the instruction cannot be evaluated again later: this is the case
+     * if the context item is not a node, or if the instruction depends on parts of the context that cannot be
+     * saved, such as position() or current-group()
+     */
+
+    public static ResultRegion make(ResultDocument instruction, XPathContext context) {
+        Item contextItem = context.getContextItem();
+        if (!(contextItem instanceof NodeInfo)) {
+            return null;
+        }
+        if ((instruction.getDependencies() &
+                (   StaticProperty.DEPENDS_ON_POSITION |
+                    StaticProperty.DEPENDS_ON_LAST |
+                    StaticProperty.DEPENDS_ON_CURRENT_GROUP |
+                    StaticProperty.DEPENDS_ON_REGEX_GROUP )) != 0) {
+            return null;
+        }
+        ResultRegion region = new ResultRegion();
+        region.instruction = instruction;
+        region.contextNode = (NodeInfo)contextItem;
+
+        // take a private copy of the local variables, as the stack frame may be reused once the
+        // current template has finished
+        XPathContextMajor saved = context.newContext();
+        StackFrame frame = context.getStackFrame().copy();
+        saved.setStackFrame(frame.getStackFrameMap(), frame.getStackFrameValues());
+        UnfailingIterator single = SingletonIterator.makeIterator(contextItem);
+        single.next();
+        saved.setCurrentIterator(single);
+        saved.setReceiver(null);
+        region.savedContext = saved;
+        return region;
+    }
+
+    /**
+     * Determine whether this region may be affected by changes to given source nodes
+     * @param changedNodes the nodes that have changed. A node whose content or attributes have changed
+     * should be reported, as should the parent of a node that has been inserted or deleted.
+     * @return true if any of the changed nodes is the context node of the instruction, or a descendant of it
+     */
+
+    public boolean isAffectedBy(List<NodeInfo> changedNodes) {
+        for (NodeInfo node : changedNodes) {
+            if (Navigator.isAncestorOrSelf(contextNode, node)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Evaluate the xsl:result-document instruction again, in the dynamic context in which it was first
+     * evaluated. The resulting updates are added to the pending update list of the Controller.
+     * @throws XPathException if a dynamic error occurs
+     */
+
+    public void reapply() throws XPathException {
+        instruction.processLeavingTail(savedContext.newContext());
+    }
+
+}
+
+// This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+// If a copy of the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+// This Source Code Form is “Incompatible With Secondary Licenses”, as defined by the Mozilla Public License, v. 2.0.
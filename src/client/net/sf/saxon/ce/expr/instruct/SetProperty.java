@@ -4,6 +4,8 @@ import java.util.ArrayList;
 import java.util.Iterator;
 
 import com.google.gwt.core.client.JavaScriptObject;
+import com.google.gwt.dom.client.Node;
+import client.net.sf.saxon.ce.dom.HTMLDocumentWrapper;
 
 import client.net.sf.saxon.ce.dom.HTMLNodeWrapper;
 import client.net.sf.saxon.ce.js.IXSLFunction;
@@ -157,6 +159,10 @@ public class SetProperty extends Instruction {
         } catch (Exception e){
         	throw new XPathException("Error setting client-property: " + member + " " + e.getMessage());
         }
+        if (Node.is(clientObject)) {
+            // properties such as innerHTML may modify the page
+            HTMLDocumentWrapper.notifyMutation();
+        }
         return null;
     }
 }
@@ -36,6 +36,24 @@ public class Template extends Procedure  {
     private boolean hasRequiredParams;
     private boolean bodyIsTailCallReturner;
     private SequenceType requiredType;
+    private int eventDelay = -1;
+    private DeferredCompilation deferredCompilation = null;
+    private XPathException compilationError = null;
+
+    /**
+     * Callback used to compile the body of a template when it is first needed, if the stylesheet
+     * was compiled with lazy template compilation
+     */
+
+    public interface DeferredCompilation {
+
+        /**
+         * Compile and optimize the body of the template, and set it using {@link Template#setBody}
+         * @throws XPathException if static errors are found in the body of the template
+         */
+
+        public void compile() throws XPathException;
+    }
 
     /**
      * Create a template
@@ -120,6 +138,29 @@ public class Template extends Procedure  {
         return hasRequiredParams;
     }
 
+    /**
+     * Set the policy for running this template in response to browser events, as defined by the
+     * ixsl:event-policy attribute
+     * @param delay a negative value if the template is to run synchronously for every event; zero if
+     * consecutive events for the same element are to be coalesced into one invocation per animation frame;
+     * a positive value if they are to be coalesced into one invocation after this number of milliseconds
+     * in which no further event occurs
+     */
+
+    public void setEventDelay(int delay) {
+        eventDelay = delay;
+    }
+
+    /**
+     * Get the policy for running this template in response to browser events
+     * @return the value set using {@link #setEventDelay}: negative for immediate execution, zero
+     * for one invocation per animation frame, positive for a debounce interval in milliseconds
+     */
+
+    public int getEventDelay() {
+        return eventDelay;
+    }
+
     /**
      * Set the required type to be returned by this template
      * @param type the required type as defined in the "as" attribute on the xsl:template element
@@ -142,6 +183,63 @@ public class Template extends Procedure  {
         }
     }
 
+    /**
+     * Request that the body of the template be compiled when the template is first invoked,
+     * rather than now
+     * @param compilation the callback that compiles the body of the template
+     */
+
+    public void setDeferredCompilation(DeferredCompilation compilation) {
+        deferredCompilation = compilation;
+    }
+
+    /**
+     * Ask whether the body of the template has been compiled
+     * @return false if compilation of the template has been deferred and has not yet happened
+     */
+
+    public boolean isCompiled() {
+        return deferredCompilation == null;
+    }
+
+    /**
+     * Compile the body of the template, if its compilation was deferred and has not yet happened
+     * @throws XPathException if static errors were found in the body of the template, whether
+     * on this call or an earlier one
+     */
+
+    public void compileIfRequired() throws XPathException {
+        if (deferredCompilation != null) {
+            DeferredCompilation compilation = deferredCompilation;
+            deferredCompilation = null;
+            try {
+                compilation.compile();
+            } catch (XPathException err) {
+                compilationError = err;
+            }
+        }
+        if (compilationError != null) {
+            throw compilationError;
+        }
+    }
+
+    /**
+     * Get the stack frame map. Callers need this before they invoke the template, so if compilation of the
+     * template was deferred, it happens now.
+     * @return the stack frame map
+     */
+
+    public SlotManager getStackFrameMap() {
+        if (deferredCompilation != null) {
+            try {
+                compileIfRequired();
+            } catch (XPathException err) {
+                // the error is thrown again when the template is invoked
+            }
+        }
+        return super.getStackFrameMap();
+    }
+
     /**
      * Get the local parameter with a given parameter id
      * @param id the parameter id
@@ -181,6 +279,7 @@ public class Template extends Procedure  {
     */
 
     public TailCall applyLeavingTail(XPathContextMajor context) throws XPathException {
+        compileIfRequired();
         if (bodyIsTailCallReturner) {
             return ((TailCallReturner)body).processLeavingTail(context);
         } else {
@@ -198,6 +297,7 @@ public class Template extends Procedure  {
     */
 
     public TailCall expand(XPathContext context) throws XPathException {
+        compileIfRequired();
         if (bodyIsTailCallReturner) {
             return ((TailCallReturner)body).processLeavingTail(context);
         } else if (body != null) {
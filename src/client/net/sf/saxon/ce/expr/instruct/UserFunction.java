@@ -243,6 +243,20 @@ public class UserFunction extends Procedure {
 
     public ValueRepresentation call(ValueRepresentation[] actualArgs, XPathContextMajor context)
             throws XPathException {
+        context.setStackFrame(getStackFrameMap(), actualArgs);
+        return call(context);
+    }
+
+    /**
+     * Call this function to return a value, where the arguments have already been placed in the
+     * stack frame of the supplied context.
+     * @param context This provides the run-time context for evaluating the function. Its stack frame
+     * must be large enough to hold all the local variables of the function, and must hold the values
+     * of the arguments in its first slots.
+     * @return a Value representing the result of the function.
+     */
+
+    public ValueRepresentation call(XPathContextMajor context) throws XPathException {
 
         if (evaluationMode == ExpressionTool.UNDECIDED) {
             // should have been done at compile time
@@ -251,7 +265,6 @@ public class UserFunction extends Procedure {
 
         // Otherwise evaluate the function
 
-        context.setStackFrame(getStackFrameMap(), actualArgs);
         ValueRepresentation result;
         try {
             result = ExpressionTool.evaluate(getBody(), evaluationMode, context, 1);
@@ -281,6 +294,18 @@ public class UserFunction extends Procedure {
          getBody().process(context);
      }
 
+    /**
+     * Call this function in "push" mode, where the arguments have already been placed in the
+     * stack frame of the supplied context.
+     * @param context This provides the run-time context for evaluating the function. Its stack frame
+     * must be large enough to hold all the local variables of the function, and must hold the values
+     * of the arguments in its first slots.
+     */
+
+    public void process(XPathContextMajor context) throws XPathException {
+        getBody().process(context);
+    }
+
     /**
      * Call this function. This method allows an XQuery function to be called directly from a Java
      * application. It creates the environment needed to achieve this
@@ -9,6 +9,13 @@ import client.net.sf.saxon.ce.value.SequenceExtent;
 * DocumentOrderIterator takes as input an iteration of nodes in any order, and
 * returns as output an iteration of the same nodes in document order, eliminating
 * any duplicates.
+*
+* <p>The input is frequently in document order already (for example, when a path expression
+* is applied to a single node), or in reverse document order (when the last step of the path uses
+* a reverse axis). The input is therefore checked as it is read, and the sort is done only if the check
+* finds an inversion: an input in document order costs one comparison per node, and an input in
+* reverse document order is simply reversed. The input must still be read in full before the first
+* node is delivered, since a later node might precede all those already read.</p>
 */
 
 public final class DocumentOrderIterator implements SequenceIterator, Sortable {
@@ -29,10 +36,29 @@ public final class DocumentOrderIterator implements SequenceIterator, Sortable {
 
         sequence = new SequenceExtent(base);
         //System.err.println("sort into document order: sequence length = " + sequence.getLength());
-        if (sequence.getLength()>1) {
-            //QuickSort.sort(this, 0, sequence.getLength()-1);
-            GenericSorter.quickSort(0, sequence.getLength(), this);
-            //GenericSorter.mergeSort(0, sequence.getLength(), this);
+        int len = sequence.getLength();
+        if (len>1) {
+            boolean ascending = true;
+            boolean descending = true;
+            for (int i=1; i<len && (ascending || descending); i++) {
+                int c = compare(i-1, i);
+                if (c > 0) {
+                    ascending = false;
+                } else if (c < 0) {
+                    descending = false;
+                }
+            }
+            if (ascending) {
+                // already in document order; any duplicates are adjacent, and are removed by next()
+            } else if (descending) {
+                for (int i=0, j=len-1; i<j; i++, j--) {
+                    swap(i, j);
+                }
+            } else {
+                //QuickSort.sort(this, 0, sequence.getLength()-1);
+                GenericSorter.quickSort(0, len, this);
+                //GenericSorter.mergeSort(0, sequence.getLength(), this);
+            }
         }
         iterator = sequence.iterate();
     }
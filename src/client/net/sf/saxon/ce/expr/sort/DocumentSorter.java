@@ -3,6 +3,7 @@ package client.net.sf.saxon.ce.expr.sort;
 import client.net.sf.saxon.ce.expr.*;
 import client.net.sf.saxon.ce.om.SequenceIterator;
 import client.net.sf.saxon.ce.trans.XPathException;
+import client.net.sf.saxon.ce.tree.iter.EmptyIterator;
 import client.net.sf.saxon.ce.type.ItemType;
 
 /**
@@ -12,6 +13,7 @@ import client.net.sf.saxon.ce.type.ItemType;
 public class DocumentSorter extends UnaryExpression {
 
     private NodeOrderComparer comparer;
+    private boolean unordered = false;
 
     public DocumentSorter(Expression base) {
         super(base);
@@ -52,6 +54,9 @@ public class DocumentSorter extends UnaryExpression {
 
 
     public int computeSpecialProperties() {
+        if (unordered) {
+            return operand.getSpecialProperties() & ~StaticProperty.ORDERED_NODESET;
+        }
         return operand.getSpecialProperties() | StaticProperty.ORDERED_NODESET;
     }
 
@@ -64,6 +69,14 @@ public class DocumentSorter extends UnaryExpression {
         if (exp != null) {
             return exp;
         } else {
+            if (offer.action == PromotionOffer.UNORDERED) {
+                // the caller needs the duplicates to be eliminated, but not the order: this can be
+                // done without sorting
+                unordered = true;
+                // the result is no longer known to be sorted
+                resetLocalStaticProperties();
+                offer.accepted = true;
+            }
             operand = doPromotion(operand, offer);
             return this;
         }
@@ -71,6 +84,9 @@ public class DocumentSorter extends UnaryExpression {
 
     public SequenceIterator iterate(XPathContext context) throws XPathException {
         //System.err.println("** SORTING **");
+        if (unordered) {
+            return new HashedVennEnumeration(operand.iterate(context), Token.UNION, EmptyIterator.getInstance());
+        }
         return new DocumentOrderIterator(operand.iterate(context), comparer);
     }
 
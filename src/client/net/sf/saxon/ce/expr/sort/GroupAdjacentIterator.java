@@ -4,39 +4,29 @@ import client.net.sf.saxon.ce.expr.Expression;
 import client.net.sf.saxon.ce.expr.XPathContext;
 import client.net.sf.saxon.ce.lib.StringCollator;
 import client.net.sf.saxon.ce.om.Item;
-import client.net.sf.saxon.ce.tree.iter.ListIterator;
 import client.net.sf.saxon.ce.om.SequenceIterator;
 import client.net.sf.saxon.ce.trans.XPathException;
 import client.net.sf.saxon.ce.type.Type;
 import client.net.sf.saxon.ce.value.AtomicValue;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * A GroupAdjacentIterator iterates over a sequence of groups defined by
  * xsl:for-each-group group-adjacent="x". The groups are returned in
  * order of first appearance.
  * <p>
  * Each step of this iterator advances to the first item of the next group,
- * leaving the members of that group in a saved list.
+ * leaving the members of that group in a saved list (or, in streaming mode, leaving
+ * them to be read from the population as the current group is consumed).
  */
 
-public class GroupAdjacentIterator implements GroupIterator {
+public class GroupAdjacentIterator extends SequentialGroupIterator {
 
-    private SequenceIterator population;
     private Expression keyExpression;
     private StringCollator collator;
     private AtomicComparer comparer;
     private ComparisonKey currentComparisonKey;
-    private XPathContext baseContext;
-    private XPathContext runningContext;
     private AtomicValue currentKey = null;
-    private List currentMembers;
     private AtomicValue nextKey = null;
-    private Item next;
-    private Item current = null;
-    private int position = 0;
 
     public GroupAdjacentIterator(SequenceIterator population, Expression keyExpression,
                                  XPathContext baseContext, StringCollator collator)
@@ -55,86 +45,47 @@ public class GroupAdjacentIterator implements GroupIterator {
         }
     }
 
-    private void advance() throws XPathException {
-        currentMembers = new ArrayList(20);
-        currentMembers.add(current);
-        while (true) {
-            Item nextCandidate = population.next();
-            if (nextCandidate == null) {
-                break;
-            }
-            AtomicValue candidateKey =
-                    (AtomicValue)keyExpression.evaluateItem(runningContext);
-            try {
-                if (currentComparisonKey.equals(comparer.getComparisonKey(candidateKey))) {
-                    currentMembers.add(nextCandidate);
-                } else {
-                    next = nextCandidate;
-                    nextKey = candidateKey;
-                    return;
-                }
-            } catch (ClassCastException e) {
-                XPathException err = new XPathException("Grouping key values are of non-comparable types (" +
-                        Type.displayTypeName(currentKey) +
-                        " and " +
-                        Type.displayTypeName(candidateKey) + ')');
-                err.setIsTypeError(true);
-                err.setXPathContext(runningContext);
-                throw err;
-            }
-        }
-        next = null;
-        nextKey = null;
-    }
-
-    public AtomicValue getCurrentGroupingKey() {
-        return currentKey;
-    }
-
-    public SequenceIterator iterateCurrentGroup() {
-        return new ListIterator(currentMembers);
-    }
-
-    public Item next() throws XPathException {
-        if (next == null) {
-            current = null;
-            position = -1;
-            return null;
-        }
-        current = next;
+    protected void startGroup() {
         currentKey = nextKey;
         currentComparisonKey = comparer.getComparisonKey(currentKey);
-        position++;
-        advance();
-        return current;
     }
 
-    public Item current() {
-        return current;
+    protected Item nextInGroup(Item last) throws XPathException {
+        Item nextCandidate = population.next();
+        if (nextCandidate == null) {
+            next = null;
+            nextKey = null;
+            return null;
+        }
+        AtomicValue candidateKey =
+                (AtomicValue)keyExpression.evaluateItem(runningContext);
+        try {
+            if (currentComparisonKey.equals(comparer.getComparisonKey(candidateKey))) {
+                return nextCandidate;
+            } else {
+                next = nextCandidate;
+                nextKey = candidateKey;
+                return null;
+            }
+        } catch (ClassCastException e) {
+            XPathException err = new XPathException("Grouping key values are of non-comparable types (" +
+                    Type.displayTypeName(currentKey) +
+                    " and " +
+                    Type.displayTypeName(candidateKey) + ')');
+            err.setIsTypeError(true);
+            err.setXPathContext(runningContext);
+            throw err;
+        }
     }
 
-    public int position() {
-        return position;
+    public AtomicValue getCurrentGroupingKey() {
+        return currentKey;
     }
 
     public SequenceIterator getAnother() throws XPathException {
         return new GroupAdjacentIterator(population.getAnother(), keyExpression, baseContext, collator);
     }
 
-    /**
-     * Get properties of this iterator, as a bit-significant integer.
-     *
-     * @return the properties of this iterator. This will be some combination of
-     *         properties such as {@link #GROUNDED}, {@link #LAST_POSITION_FINDER}. It is always
-     *         acceptable to return the value zero, indicating that there are no known special properties.
-     *         It is acceptable for the properties of the iterator to change depending on its state.
-     */
-
-    public int getProperties() {
-        return 0;
-    }
-
-
 }
 
 
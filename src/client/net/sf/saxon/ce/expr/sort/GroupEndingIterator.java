@@ -1,13 +1,12 @@
 package client.net.sf.saxon.ce.expr.sort;
 
 import client.net.sf.saxon.ce.expr.XPathContext;
+import client.net.sf.saxon.ce.om.Item;
 import client.net.sf.saxon.ce.om.NodeInfo;
 import client.net.sf.saxon.ce.om.SequenceIterator;
 import client.net.sf.saxon.ce.pattern.Pattern;
 import client.net.sf.saxon.ce.trans.XPathException;
 
-import java.util.ArrayList;
-
 /**
  * A GroupEndingIterator iterates over a sequence of groups defined by
  * xsl:for-each-group group-ending-with="x". The groups are returned in
@@ -28,24 +27,17 @@ public class GroupEndingIterator extends GroupMatchingIterator implements GroupI
         next = population.next();
     }
 
-    protected void advance() throws XPathException {
-        currentMembers = new ArrayList(20);
-        currentMembers.add(current);
-
-        next = current;
-        while (next != null) {
-            if (pattern.matches((NodeInfo)next, runningContext)) {
-                next = population.next();
-                if (next != null) {
-                    break;
-                }
-            } else {
-                next = population.next();
-                if (next != null) {
-                    currentMembers.add(next);
-                }
-            }
+    protected Item nextInGroup(Item last) throws XPathException {
+        if (pattern.matches((NodeInfo)last, runningContext)) {
+            // the last member ends the group; the next item (if any) starts the next group
+            next = population.next();
+            return null;
+        }
+        Item nextCandidate = population.next();
+        if (nextCandidate == null) {
+            next = null;
         }
+        return nextCandidate;
     }
 
     public SequenceIterator getAnother() throws XPathException {
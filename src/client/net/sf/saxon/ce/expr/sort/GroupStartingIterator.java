@@ -1,13 +1,12 @@
 package client.net.sf.saxon.ce.expr.sort;
 
 import client.net.sf.saxon.ce.expr.XPathContext;
+import client.net.sf.saxon.ce.om.Item;
 import client.net.sf.saxon.ce.om.NodeInfo;
 import client.net.sf.saxon.ce.om.SequenceIterator;
 import client.net.sf.saxon.ce.pattern.Pattern;
 import client.net.sf.saxon.ce.trans.XPathException;
 
-import java.util.ArrayList;
-
 /**
  * A GroupStartingIterator iterates over a sequence of groups defined by
  * xsl:for-each-group group-starting-with="x". The groups are returned in
@@ -28,22 +27,14 @@ public class GroupStartingIterator extends GroupMatchingIterator implements Grou
         next = population.next();
     }
 
-    protected void advance() throws XPathException {
-        currentMembers = new ArrayList(10);
-        currentMembers.add(current);
-        while (true) {
-            NodeInfo nextCandidate = (NodeInfo)population.next();
-            if (nextCandidate == null) {
-                break;
-            }
-            if (pattern.matches(nextCandidate, runningContext)) {
-                next = nextCandidate;
-                return;
-            } else {
-                currentMembers.add(nextCandidate);
-            }
+    protected Item nextInGroup(Item last) throws XPathException {
+        NodeInfo nextCandidate = (NodeInfo)population.next();
+        if (nextCandidate == null || pattern.matches(nextCandidate, runningContext)) {
+            // the candidate (if any) starts the next group
+            next = nextCandidate;
+            return null;
         }
-        next = null;
+        return nextCandidate;
     }
 
     public SequenceIterator getAnother() throws XPathException {
@@ -0,0 +1,176 @@
+package client.net.sf.saxon.ce.expr.sort;
+
+import client.net.sf.saxon.ce.expr.XPathContext;
+import client.net.sf.saxon.ce.om.Item;
+import client.net.sf.saxon.ce.om.SequenceIterator;
+import client.net.sf.saxon.ce.trans.XPathException;
+import client.net.sf.saxon.ce.tree.iter.ListIterator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A SequentialGroupIterator contains code shared between the iterators for group-adjacent,
+ * group-starting-with and group-ending-with, in which each group is a run of consecutive items
+ * of the population.
+ *
+ * <p>By default, the members of each group are collected into a list when the iterator moves to the
+ * group. In streaming mode, the members are instead read from the population as the iterator returned
+ * by {@link #iterateCurrentGroup} is consumed, so that only one item is held in memory at a time. This
+ * is only possible if the current group is read at most once, which the caller establishes by static
+ * analysis; if the current group is nevertheless requested a second time (for example, by a template
+ * called from the body of the xsl:for-each-group), the group is rebuilt by scanning a copy of the
+ * population, and the iterator reverts to collecting the members of subsequent groups.</p>
+ */
+
+public abstract class SequentialGroupIterator implements GroupIterator {
+
+    protected SequenceIterator population;
+    protected XPathContext baseContext;
+    protected XPathContext runningContext;
+    protected List currentMembers;
+    protected Item next;
+    protected Item current = null;
+    protected int position = 0;
+
+    private boolean streaming = false;
+    private boolean groupRead;          // true once iterateCurrentGroup() has been called for this group
+    private boolean groupEnded;         // true once all the members of the current group have been read
+    private Item lastMember;            // the last member of the current group read from the population
+
+    /**
+     * Read the next member of the current group from the population. If there are no more members,
+     * this method must set {@link #next} to the first item of the next group, or to null if there
+     * is none.
+     * @param last the last member of the current group that was read
+     * @return the next member of the current group, or null if there are no more members
+     * @throws XPathException if a dynamic error occurs
+     */
+
+    protected abstract Item nextInGroup(Item last) throws XPathException;
+
+    /**
+     * Called when the iterator moves to a new group, after {@link #current} has been set to the first
+     * item of the group and before any other members are read. The default implementation does nothing.
+     */
+
+    protected void startGroup() {
+    }
+
+    /**
+     * Request streaming of the current group
+     * @param streaming true if the current group is to be read directly from the population. The
+     * caller must have established that the current group is read at most once for each group.
+     */
+
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    public SequenceIterator iterateCurrentGroup() throws XPathException {
+        if (currentMembers != null) {
+            return new ListIterator(currentMembers);
+        }
+        if (!groupRead) {
+            groupRead = true;
+            return new GroupMemberIterator();
+        }
+        // the group has already been read: rebuild it from a copy of the population
+        streaming = false;
+        SequentialGroupIterator copy = (SequentialGroupIterator)getAnother();
+        for (int i = 0; i < position; i++) {
+            copy.next();
+        }
+        currentMembers = copy.currentMembers;
+        return new ListIterator(currentMembers);
+    }
+
+    public Item next() throws XPathException {
+        if (position > 0 && !groupEnded) {
+            // skip any members of the current group that were not read
+            while ((lastMember = nextInGroup(lastMember)) != null) {}
+        }
+        if (next == null) {
+            current = null;
+            position = -1;
+            return null;
+        }
+        current = next;
+        position++;
+        startGroup();
+        if (streaming) {
+            currentMembers = null;
+            groupRead = false;
+            groupEnded = false;
+            lastMember = current;
+        } else {
+            currentMembers = new ArrayList(20);
+            Item member = current;
+            do {
+                currentMembers.add(member);
+            } while ((member = nextInGroup(member)) != null);
+            groupEnded = true;
+        }
+        return current;
+    }
+
+    public Item current() {
+        return current;
+    }
+
+    public int position() {
+        return position;
+    }
+
+    public int getProperties() {
+        return 0;
+    }
+
+    /**
+     * Iterator over the members of the current group, reading them from the population as required
+     */
+
+    private class GroupMemberIterator implements SequenceIterator {
+
+        private Item currentMember = null;
+        private int memberPosition = 0;
+
+        public Item next() throws XPathException {
+            if (memberPosition == 0) {
+                currentMember = current;
+            } else if (groupEnded) {
+                currentMember = null;
+            } else {
+                currentMember = nextInGroup(lastMember);
+                if (currentMember == null) {
+                    groupEnded = true;
+                } else {
+                    lastMember = currentMember;
+                }
+            }
+            memberPosition = (currentMember == null ? -1 : memberPosition + 1);
+            return currentMember;
+        }
+
+        public Item current() {
+            return currentMember;
+        }
+
+        public int position() {
+            return memberPosition;
+        }
+
+        public SequenceIterator getAnother() throws XPathException {
+            return iterateCurrentGroup();
+        }
+
+        public int getProperties() {
+            return 0;
+        }
+    }
+
+}
+
+// This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+// If a copy of the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+// This Source Code Form is “Incompatible With Secondary Licenses”, as defined by the Mozilla Public License, v. 2.0.
@@ -3,7 +3,7 @@ package client.net.sf.saxon.ce.functions;
 import client.net.sf.saxon.ce.event.ComplexContentOutputter;
 import client.net.sf.saxon.ce.event.SequenceReceiver;
 import client.net.sf.saxon.ce.expr.XPathContext;
-import client.net.sf.saxon.ce.tree.util.FastStringBuffer;
+import client.net.sf.saxon.ce.tree.util.Rope;
 import client.net.sf.saxon.ce.om.Item;
 import client.net.sf.saxon.ce.trans.XPathException;
 import client.net.sf.saxon.ce.value.AtomicValue;
@@ -42,14 +42,16 @@ public class Concat extends SystemFunction {
 
     public Item evaluateItem(XPathContext c) throws XPathException {
         int numArgs = argument.length;
-        FastStringBuffer sb = new FastStringBuffer(FastStringBuffer.SMALL);
+        // Use a Rope so that concat($acc, ...) in a recursive template or function shares the
+        // characters of $acc rather than copying them at every level
+        CharSequence result = "";
         for (int i=0; i<numArgs; i++) {
             AtomicValue val = (AtomicValue)argument[i].evaluateItem(c);
             if (val!=null) {
-                sb.append(val.getStringValueCS());
+                result = Rope.concat(result, val.getStringValueCS());
             }
         }
-        return StringValue.makeStringValue(sb.condense());
+        return StringValue.makeStringValue(result);
     }
 
     /**
@@ -223,6 +223,7 @@ public class DocumentFn extends SystemFunction {
             }
 
             DocumentInfo newdoc = config.buildDocument(documentKey.toString());
+            controller.prepareInputTree(newdoc);
             controller.registerDocument(newdoc, documentKey);
             controller.addUnavailableOutputDestination(documentKey);
             return getFragment(newdoc, fragmentId, c);
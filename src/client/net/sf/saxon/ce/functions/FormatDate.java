@@ -2,6 +2,7 @@ package client.net.sf.saxon.ce.functions;
 
 import client.net.sf.saxon.ce.Configuration;
 import client.net.sf.saxon.ce.expr.ExpressionVisitor;
+import client.net.sf.saxon.ce.expr.StringLiteral;
 import client.net.sf.saxon.ce.expr.XPathContext;
 import client.net.sf.saxon.ce.expr.number.Numberer_en;
 import client.net.sf.saxon.ce.lib.Numberer;
@@ -15,6 +16,10 @@ import com.google.gwt.regexp.shared.MatchResult;
 import com.google.gwt.regexp.shared.RegExp;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Implement the format-date(), format-time(), and format-dateTime() functions
@@ -23,12 +28,30 @@ import java.math.BigDecimal;
 
 public class FormatDate extends SystemFunction {
 
+    /**
+     * The maximum number of compiled pictures held in the cache used for pictures that are not known statically
+     */
+
+    private static final int PICTURE_CACHE_SIZE = 32;
+
+    private static LinkedHashMap<String, Object[]> pictureCache =
+            new LinkedHashMap<String, Object[]>(PICTURE_CACHE_SIZE, 0.75f, true) {
+                protected boolean removeEldestEntry(Map.Entry<String, Object[]> eldest) {
+                    return size() > PICTURE_CACHE_SIZE;
+                }
+            };
+
+    private Object[] compiledPicture = null;
+        // held if the picture is known statically
+
     public FormatDate(int operation) {
         this.operation = operation;
     }
 
     public FormatDate newInstance() {
-        return new FormatDate(operation);
+        FormatDate f = new FormatDate(operation);
+        f.compiledPicture = compiledPicture;
+        return f;
     }
 
     public void checkArguments(ExpressionVisitor visitor) throws XPathException {
@@ -39,6 +62,15 @@ public class FormatDate extends SystemFunction {
                     getSourceLocator());
         }
         super.checkArguments(visitor);
+        if (argument[1] instanceof StringLiteral) {
+            // picture is known statically - optimize for this common case
+            try {
+                compiledPicture = compilePicture(((StringLiteral)argument[1]).getStringValue());
+            } catch (XPathException err) {
+                // the error is a dynamic error, reported only if the function is evaluated
+                compiledPicture = null;
+            }
+        }
     }
 
     /**
@@ -50,7 +82,20 @@ public class FormatDate extends SystemFunction {
         if (value==null) {
             return null;
         }
-        String format = argument[1].evaluateItem(context).getStringValue();
+        Object[] picture = compiledPicture;
+        if (picture == null) {
+            String format = argument[1].evaluateItem(context).getStringValue();
+            picture = pictureCache.get(format);
+            if (picture == null) {
+                try {
+                    picture = compilePicture(format);
+                } catch (XPathException err) {
+                    err.maybeSetContext(context);
+                    throw err;
+                }
+                pictureCache.put(format, picture);
+            }
+        }
 
         StringValue calendarVal = null;
         StringValue countryVal = null;
@@ -63,7 +108,7 @@ public class FormatDate extends SystemFunction {
 
         String language = (languageVal == null ? null : languageVal.getStringValue());
         String country = (countryVal == null ? null : countryVal.getStringValue());
-        CharSequence result = formatDate(value, format, language, country, context);
+        CharSequence result = formatDate(value, picture, language, country, context);
         if (calendarVal != null) {
             String cal = calendarVal.getStringValue();
             if (!cal.equals("AD") && !cal.equals("ISO")) {
@@ -74,47 +119,25 @@ public class FormatDate extends SystemFunction {
     }
 
     /**
-     * This method analyzes the formatting picture and delegates the work of formatting
-     * individual parts of the date.
-     * @param value the value to be formatted
+     * Analyze a formatting picture into a sequence of literal strings and component specifiers
      * @param format the supplied format picture
-     * @param language the chosen language
-     * @param country the chosen country
-     * @param context the XPath dynamic evaluation context
-     * @return the formatted date/time
+     * @return an array each of whose members is either a String, to be copied to the output, or a
+     * {@link ComponentSpecifier}, representing a variable marker in the picture
+     * @throws XPathException if the picture is invalid
      */
 
-    private static CharSequence formatDate(CalendarValue value, String format, String language, String country, XPathContext context)
-    throws XPathException {
-
-        Configuration config = context.getConfiguration();
-
-        boolean languageDefaulted = (language == null);
-        if (language == null) {
-            language = "en";
-        }
-        if (country == null) {
-            country = "US";
-        }
-
-        Numberer numberer = config.makeNumberer(language, country);
-        FastStringBuffer sb = new FastStringBuffer(FastStringBuffer.SMALL);
-        if (numberer.getClass() == Numberer_en.class && !"en".equals(language) && !languageDefaulted) {
-            sb.append("[Language: en]");
-        }
-
-
-
+    private static Object[] compilePicture(String format) throws XPathException {
+        List<Object> parts = new ArrayList<Object>();
+        FastStringBuffer literal = new FastStringBuffer(FastStringBuffer.TINY);
         int i = 0;
         while (true) {
             while (i < format.length() && format.charAt(i) != '[') {
-                sb.append(format.charAt(i));
+                literal.append(format.charAt(i));
                 if (format.charAt(i) == ']') {
                     i++;
                     if (i == format.length() || format.charAt(i) != ']') {
                         XPathException e = new XPathException("Closing ']' in date picture must be written as ']]'");
                         e.setErrorCode("XTDE1340");
-                        e.setXPathContext(context);
                         throw e;
                     }
                 }
@@ -126,74 +149,81 @@ public class FormatDate extends SystemFunction {
             // look for '[['
             i++;
             if (i < format.length() && format.charAt(i) == '[') {
-                sb.append('[');
+                literal.append('[');
                 i++;
             } else {
                 int close = (i < format.length() ? format.indexOf("]", i) : -1);
                 if (close == -1) {
                     XPathException e = new XPathException("Date format contains a '[' with no matching ']'");
                     e.setErrorCode("XTDE1340");
-                    e.setXPathContext(context);
                     throw e;
                 }
+                if (literal.length() > 0) {
+                    parts.add(literal.toString());
+                    literal.setLength(0);
+                }
                 String componentFormat = format.substring(i, close);
-                sb.append(formatComponent(value, Whitespace.removeAllWhitespace(componentFormat),
-                        numberer, country, context));
+                parts.add(new ComponentSpecifier(Whitespace.removeAllWhitespace(componentFormat).toString()));
                 i = close+1;
             }
         }
-        return sb;
+        if (literal.length() > 0) {
+            parts.add(literal.toString());
+        }
+        return parts.toArray();
     }
 
-    private static RegExp componentPattern =
-            RegExp.compile("([YMDdWwFHhmsfZzPCE])\\s*(.*)");
+    /**
+     * This method delegates the work of formatting individual parts of the date, according to
+     * a compiled picture.
+     * @param value the value to be formatted
+     * @param picture the compiled format picture
+     * @param language the chosen language
+     * @param country the chosen country
+     * @param context the XPath dynamic evaluation context
+     * @return the formatted date/time
+     */
 
-    private static CharSequence formatComponent(CalendarValue value, CharSequence specifier,
-                                                Numberer numberer, String country, XPathContext context)
+    private static CharSequence formatDate(CalendarValue value, Object[] picture, String language, String country, XPathContext context)
     throws XPathException {
-        boolean ignoreDate = (value instanceof TimeValue);
-        boolean ignoreTime = (value instanceof DateValue);
-        DateTimeValue dtvalue = value.toDateTime();
 
-        MatchResult matcher = componentPattern.exec(specifier.toString());
-        if (matcher == null) {
-            XPathException error = new XPathException("Unrecognized date/time component [" + specifier + ']');
-            error.setErrorCode("XTDE1340");
-            error.setXPathContext(context);
-            throw error;
+        Configuration config = context.getConfiguration();
+
+        boolean languageDefaulted = (language == null);
+        if (language == null) {
+            language = "en";
         }
-        String component = matcher.getGroup(1);
-        if (component == null) {
-            component = "";
+        if (country == null) {
+            country = "US";
         }
-        String format = matcher.getGroup(2);
-        if (format==null) {
-            format = "";
+
+        Numberer numberer = config.makeNumberer(language, country);
+        FastStringBuffer sb = new FastStringBuffer(FastStringBuffer.SMALL);
+        if (numberer.getClass() == Numberer_en.class && !"en".equals(language) && !languageDefaulted) {
+            sb.append("[Language: en]");
         }
-        boolean defaultFormat = false;
-        if ("".equals(format) || format.startsWith(",")) {
-            defaultFormat = true;
-            switch (component.charAt(0) ) {
-                case 'F':
-                    format = "Nn" + format;
-                    break;
-                case 'P':
-                    format = 'n' + format;
-                    break;
-                case 'C':
-                case 'E':
-                    format = 'N' + format;
-                    break;
-                case 'm':
-                case 's':
-                    format = "01" + format;
-                    break;
-                default:
-                    format = '1' + format;
+
+        for (int i = 0; i < picture.length; i++) {
+            if (picture[i] instanceof String) {
+                sb.append((String)picture[i]);
+            } else {
+                formatComponent(value, (ComponentSpecifier)picture[i], numberer, sb, context);
             }
         }
+        return sb;
+    }
+
+    private static RegExp componentPattern =
+            RegExp.compile("([YMDdWwFHhmsfZzPCE])\\s*(.*)");
+
+    private static void formatComponent(CalendarValue value, ComponentSpecifier spec,
+                                        Numberer numberer, FastStringBuffer sb, XPathContext context)
+    throws XPathException {
+        boolean ignoreDate = (value instanceof TimeValue);
+        boolean ignoreTime = (value instanceof DateValue);
+        DateTimeValue dtvalue = value.toDateTime();
 
-        switch (component.charAt(0)) {
+        switch (spec.component) {
         case'Y':       // year
             if (ignoreDate) {
                 XPathException error = new XPathException("In formatTime(): an xs:time value does not contain a year component");
@@ -205,7 +235,8 @@ public class FormatDate extends SystemFunction {
                 if (year < 0) {
                     year = 1 - year;
                 }
-                return formatNumber(component, year, format, defaultFormat, numberer, context);
+                formatNumber(spec, year, numberer, sb);
+                return;
             }
         case'M':       // month
             if (ignoreDate) {
@@ -215,7 +246,8 @@ public class FormatDate extends SystemFunction {
                 throw error;
             } else {
                 int month = dtvalue.getMonth();
-                return formatNumber(component, month, format, defaultFormat, numberer, context);
+                formatNumber(spec, month, numberer, sb);
+                return;
             }
         case'D':       // day in month
             if (ignoreDate) {
@@ -225,7 +257,8 @@ public class FormatDate extends SystemFunction {
                 throw error;
             } else {
                 int day = dtvalue.getDay();
-                return formatNumber(component, day, format, defaultFormat, numberer, context);
+                formatNumber(spec, day, numberer, sb);
+                return;
             }
         case'd':       // day in year
             if (ignoreDate) {
@@ -235,7 +268,8 @@ public class FormatDate extends SystemFunction {
                 throw error;
             } else {
                 int day = DateValue.getDayWithinYear(dtvalue.getYear(), dtvalue.getMonth(), dtvalue.getDay());
-                return formatNumber(component, day, format, defaultFormat, numberer, context);
+                formatNumber(spec, day, numberer, sb);
+                return;
             }
         case'W':       // week of year
             if (ignoreDate) {
@@ -245,7 +279,8 @@ public class FormatDate extends SystemFunction {
                 throw error;
             } else {
                 int week = DateValue.getWeekNumber(dtvalue.getYear(), dtvalue.getMonth(), dtvalue.getDay());
-                return formatNumber(component, week, format, defaultFormat, numberer, context);
+                formatNumber(spec, week, numberer, sb);
+                return;
             }
         case'w':       // week in month
             if (ignoreDate) {
@@ -255,7 +290,8 @@ public class FormatDate extends SystemFunction {
                 throw error;
             } else {
                 int week = DateValue.getWeekNumberWithinMonth(dtvalue.getYear(), dtvalue.getMonth(), dtvalue.getDay());
-                return formatNumber(component, week, format, defaultFormat, numberer, context);
+                formatNumber(spec, week, numberer, sb);
+                return;
             }
         case'H':       // hour in day
             if (ignoreTime) {
@@ -265,7 +301,8 @@ public class FormatDate extends SystemFunction {
                 throw error;
             } else {
                 IntegerValue hour = (IntegerValue)value.getComponent(Component.HOURS);
-                return formatNumber(component, (int)hour.intValue(), format, defaultFormat, numberer, context);
+                formatNumber(spec, (int)hour.intValue(), numberer, sb);
+                return;
             }
         case'h':       // hour in half-day (12 hour clock)
             if (ignoreTime) {
@@ -282,7 +319,8 @@ public class FormatDate extends SystemFunction {
                 if (hr == 0) {
                     hr = 12;
                 }
-                return formatNumber(component, hr, format, defaultFormat, numberer, context);
+                formatNumber(spec, hr, numberer, sb);
+                return;
             }
         case'm':       // minutes
             if (ignoreTime) {
@@ -292,7 +330,8 @@ public class FormatDate extends SystemFunction {
                 throw error;
             } else {
                 IntegerValue min = (IntegerValue)value.getComponent(Component.MINUTES);
-                return formatNumber(component, (int)min.intValue(), format, defaultFormat, numberer, context);
+                formatNumber(spec, (int)min.intValue(), numberer, sb);
+                return;
             }
         case's':       // seconds
             if (ignoreTime) {
@@ -302,7 +341,8 @@ public class FormatDate extends SystemFunction {
                 throw error;
             } else {
                 IntegerValue sec = (IntegerValue)value.getComponent(Component.WHOLE_SECONDS);
-                return formatNumber(component, (int)sec.intValue(), format, defaultFormat, numberer, context);
+                formatNumber(spec, (int)sec.intValue(), numberer, sb);
+                return;
             }
         case'f':       // fractional seconds
             // ignore the format
@@ -313,14 +353,14 @@ public class FormatDate extends SystemFunction {
                 throw error;
             } else {
                 int micros = (int)((IntegerValue)value.getComponent(Component.MICROSECONDS)).intValue();
-                return formatNumber(component, micros, format, defaultFormat, numberer, context);
+                formatNumber(spec, micros, numberer, sb);
+                return;
             }
         case'Z':       // timezone in +hh:mm format, unless format=N in which case use timezone name
             if (value.hasTimezone()) {
-                return getNamedTimeZone(value.toDateTime(), country, format);
-            } else {
-                return "";
+                value.appendTimezone(sb);
             }
+            return;
         case'z':       // timezone
             if (value.hasTimezone()) {
                 int tz = value.getTimezoneInMinutes();
@@ -329,13 +369,7 @@ public class FormatDate extends SystemFunction {
                 if (tz != 0) {
                     CalendarValue.appendTimezone(tz, fsb);
                 }
-                int comma = format.indexOf(',');
-                int min = 0;
-                if (comma > 0) {
-                    String widths = format.substring(comma);
-                    int[] range = getWidths(widths);
-                    min = range[0];
-                }
+                int min = spec.min;
                 if (min < 6) {
                     if (tz % 60 == 0) {
                         // No minutes component in timezone
@@ -347,10 +381,9 @@ public class FormatDate extends SystemFunction {
                         fsb.removeCharAt(4);
                     }
                 }
-                return fsb;
-            } else {
-                return "";
+                sb.append(fsb);
             }
+            return;
         case'F':       // day of week
             if (ignoreDate) {
                 XPathException error = new XPathException("In formatTime(): an xs:time value does not contain day-of-week component");
@@ -359,7 +392,8 @@ public class FormatDate extends SystemFunction {
                 throw error;
             } else {
                 int day = DateValue.getDayOfWeek(dtvalue.getYear(), dtvalue.getMonth(), dtvalue.getDay());
-                return formatNumber(component, day, format, defaultFormat, numberer, context);
+                formatNumber(spec, day, numberer, sb);
+                return;
             }
         case'P':       // am/pm marker
             if (ignoreTime) {
@@ -369,10 +403,12 @@ public class FormatDate extends SystemFunction {
                 throw error;
             } else {
                 int minuteOfDay = dtvalue.getHour() * 60 + dtvalue.getMinute();
-                return formatNumber(component, minuteOfDay, format, defaultFormat, numberer, context);
+                formatNumber(spec, minuteOfDay, numberer, sb);
+                return;
             }
         case'C':       // calendar
-            return numberer.getCalendarName("AD");
+            sb.append(numberer.getCalendarName("AD"));
+            return;
         case'E':       // era
             if (ignoreDate) {
                 XPathException error = new XPathException("In formatTime(): an xs:time value does not contain an AD/BC component");
@@ -381,16 +417,18 @@ public class FormatDate extends SystemFunction {
                 throw error;
             } else {
                 int year = dtvalue.getYear();
-                return numberer.getEraName(year);
+                sb.append(numberer.getEraName(year));
+                return;
             }
         default:
-            XPathException e = new XPathException("Unknown formatDate/time component specifier '" + format.charAt(0) + '\'');
+            XPathException e = new XPathException("Unknown formatDate/time component specifier '" + spec.component + '\'');
             e.setErrorCode("XTDE1340");
             e.setXPathContext(context);
             throw e;
         }
     }
 
+
     private static RegExp formatPattern =
             RegExp.compile("([^,]*)(,.*)?");           // Note, the group numbers are different from above
 
@@ -402,90 +440,162 @@ public class FormatDate extends SystemFunction {
 
     private static RegExp digitsPattern =
             RegExp.compile("[0-9]+"); // was [0-9]* but this always returned a match - java: "\\p{Nd}*"
- 
-    private static CharSequence formatNumber(String component, int value,
-                                             String format, boolean defaultFormat, Numberer numberer, XPathContext context)
-    throws XPathException {
-        MatchResult matcher = formatPattern.exec(format);
-        if (matcher == null) {
-            XPathException error = new XPathException("Unrecognized format picture [" + component + format + ']');
-            error.setErrorCode("XTDE1340");
-            error.setXPathContext(context);
-            throw error;
-        }
-        //String primary = matcher.group(1);
-        //String modifier = matcher.group(2);       
-        String primary = matcher.getGroup(1);
-        if (primary == null) {
-            primary = "";
-        }
 
-        String modifier = null;
-        if (primary.endsWith("t")) {
-            primary = primary.substring(0, primary.length()-1);
-            modifier = "t";
-        } else if (primary.endsWith("o")) {
-            primary = primary.substring(0, primary.length()-1);
-            modifier = "o";
-        }
-        String letterValue = ("t".equals(modifier) ? "traditional" : null);
-        String ordinal = ("o".equals(modifier) ? numberer.getOrdinalSuffixForDateTime(component) : null);
-        String widths = matcher.getGroup(2);
-        if (widths == null) {
-            widths = "";
-        }
-        if (!alphanumericPattern.test(primary)) {
-            XPathException error = new XPathException("In format picture at '" + primary +
-                    "', primary format must be alphanumeric");
-            error.setErrorCode("XTDE1340");
-            error.setXPathContext(context);
-            throw error;
-        }
+    /**
+     * Inner class to represent one variable marker in a date picture, for example [D01], analyzed so that
+     * the picture does not need to be parsed again each time a date is formatted
+     */
+
+    private static class ComponentSpecifier {
+
+        char component;
+        String componentName;
+        String format;
+        boolean defaultFormat = false;
+        String primary;
+        String letterValue = null;
+        boolean ordinal = false;
         int min = 1;
         int max = Integer.MAX_VALUE;
-        
-        if (widths==null || "".equals(widths)) {
-            if (digitsPattern.test(primary)) {
-                int len = StringValue.getStringLength(primary);
-                if (len > 1) {
-                    // "A format token containing leading zeroes, such as 001, sets the minimum and maximum width..."
-                    // We interpret this literally: a format token of "1" does not set a maximum, because it would
-                    // cause the year 2006 to be formatted as "6".
-                    min = len;
-                    max = len;
+
+        public ComponentSpecifier(String specifier) throws XPathException {
+            MatchResult matcher = componentPattern.exec(specifier);
+            if (matcher == null) {
+                XPathException error = new XPathException("Unrecognized date/time component [" + specifier + ']');
+                error.setErrorCode("XTDE1340");
+                throw error;
+            }
+            componentName = matcher.getGroup(1);
+            component = componentName.charAt(0);
+            format = matcher.getGroup(2);
+            if (format==null) {
+                format = "";
+            }
+            if ("".equals(format) || format.startsWith(",")) {
+                defaultFormat = true;
+                switch (component) {
+                    case 'F':
+                        format = "Nn" + format;
+                        break;
+                    case 'P':
+                        format = 'n' + format;
+                        break;
+                    case 'C':
+                    case 'E':
+                        format = 'N' + format;
+                        break;
+                    case 'm':
+                    case 's':
+                        format = "01" + format;
+                        break;
+                    default:
+                        format = '1' + format;
                 }
             }
-        } else if (primary.equals("I") || primary.equals("i")) {
-            // for roman numerals, ignore the width specifier
-            min = 1;
-            max = Integer.MAX_VALUE;
-        } else {
-            int[] range = getWidths(widths);
-            min = range[0];
-            max = range[1];
-            if (defaultFormat) {
-                // if format was defaulted, the explicit widths override the implicit format
-                if (primary.endsWith("1") && min != primary.length()) {
-                    FastStringBuffer sb = new FastStringBuffer(min+1);
-                    for (int i=1; i<min; i++) {
-                        sb.append('0');
+            switch (component) {
+                case 'Z':
+                case 'z':
+                    // only the minimum width is used, and only for the GMT format
+                    int comma = format.indexOf(',');
+                    min = 0;
+                    if (comma > 0) {
+                        min = getWidths(format.substring(comma))[0];
                     }
-                    sb.append('1');
-                    primary = sb.toString();
-                }
+                    break;
+                case 'C':
+                case 'E':
+                    break;
+                default:
+                    analyzeNumberFormat();
             }
         }
 
-        if ("P".equals(component)) {
-            // A.M./P.M. can only be formatted as a name
-            if (!("N".equals(primary) || "n".equals(primary) || "Nn".equals(primary))) {
-                primary = "n";
+        private void analyzeNumberFormat() throws XPathException {
+            MatchResult matcher = formatPattern.exec(format);
+            if (matcher == null) {
+                XPathException error = new XPathException("Unrecognized format picture [" + componentName + format + ']');
+                error.setErrorCode("XTDE1340");
+                throw error;
+            }
+            primary = matcher.getGroup(1);
+            if (primary == null) {
+                primary = "";
+            }
+
+            if (primary.endsWith("t")) {
+                primary = primary.substring(0, primary.length()-1);
+                letterValue = "traditional";
+            } else if (primary.endsWith("o")) {
+                primary = primary.substring(0, primary.length()-1);
+                ordinal = true;
             }
-            if (max == Integer.MAX_VALUE) {
-                // if no max specified, use 4. An explicit greater value allows use of "noon" and "midnight"
-                max = 4;
+            String widths = matcher.getGroup(2);
+            if (widths == null) {
+                widths = "";
+            }
+            if (!alphanumericPattern.test(primary)) {
+                XPathException error = new XPathException("In format picture at '" + primary +
+                        "', primary format must be alphanumeric");
+                error.setErrorCode("XTDE1340");
+                throw error;
+            }
+
+            if ("".equals(widths)) {
+                if (digitsPattern.test(primary)) {
+                    int len = StringValue.getStringLength(primary);
+                    if (len > 1) {
+                        // "A format token containing leading zeroes, such as 001, sets the minimum and maximum width..."
+                        // We interpret this literally: a format token of "1" does not set a maximum, because it would
+                        // cause the year 2006 to be formatted as "6".
+                        min = len;
+                        max = len;
+                    }
+                }
+            } else if (primary.equals("I") || primary.equals("i")) {
+                // for roman numerals, ignore the width specifier
+                min = 1;
+                max = Integer.MAX_VALUE;
+            } else {
+                int[] range = getWidths(widths);
+                min = range[0];
+                max = range[1];
+                if (defaultFormat) {
+                    // if format was defaulted, the explicit widths override the implicit format
+                    if (primary.endsWith("1") && min != primary.length()) {
+                        FastStringBuffer sb = new FastStringBuffer(min+1);
+                        for (int i=1; i<min; i++) {
+                            sb.append('0');
+                        }
+                        sb.append('1');
+                        primary = sb.toString();
+                    }
+                }
             }
-        } else if ("f".equals(component)) {
+
+            if (component == 'P') {
+                // A.M./P.M. can only be formatted as a name
+                if (!isNameFormat(primary)) {
+                    primary = "n";
+                }
+                if (max == Integer.MAX_VALUE) {
+                    // if no max specified, use 4. An explicit greater value allows use of "noon" and "midnight"
+                    max = 4;
+                }
+            } else if (component != 'M' && component != 'F' && isNameFormat(primary)) {
+                // only months, days of the week, and am/pm markers can be formatted as names
+                primary = "1";
+            }
+        }
+
+        private static boolean isNameFormat(String primary) {
+            return "N".equals(primary) || "n".equals(primary) || "Nn".equals(primary);
+        }
+    }
+
+    private static void formatNumber(ComponentSpecifier spec, int value, Numberer numberer, FastStringBuffer sb) {
+        int min = spec.min;
+        int max = spec.max;
+        if (spec.component == 'f') {
             // value is supplied as integer number of microseconds
             String s;
             if (value==0) {
@@ -511,39 +621,41 @@ public class FormatDate extends SystemFunction {
             while (s.length() > min && s.charAt(s.length()-1) == '0') {
                 s = s.substring(0, s.length()-1);
             }
-            return s;
+            sb.append(s);
+            return;
         }
 
-        if ("N".equals(primary) || "n".equals(primary) || "Nn".equals(primary)) {
-            String s = "";
-            if ("M".equals(component)) {
+        String primary = spec.primary;
+        if (ComponentSpecifier.isNameFormat(primary)) {
+            String s;
+            if (spec.component == 'M') {
                 s = numberer.monthName(value, min, max);
-            } else if ("F".equals(component)) {
+            } else if (spec.component == 'F') {
                 s = numberer.dayName(value, min, max);
-            } else if ("P".equals(component)) {
-                s = numberer.halfDayName(value, min, max);
             } else {
-                primary = "1";
+                s = numberer.halfDayName(value, min, max);
             }
             if ("N".equals(primary)) {
-                return s.toUpperCase();
+                sb.append(s.toUpperCase());
             } else if ("n".equals(primary)) {
-                return s.toLowerCase();
+                sb.append(s.toLowerCase());
             } else {
-                return s;
+                sb.append(s);
             }
+            return;
         }
 
-        String s = numberer.format(value, primary, null, letterValue, ordinal);
+        String ordinal = (spec.ordinal ? numberer.getOrdinalSuffixForDateTime(spec.componentName) : null);
+        String s = numberer.format(value, primary, null, spec.letterValue, ordinal);
         int len = StringValue.getStringLength(s);
-        while (len < min) {
+        if (len < min) {
             // assert: this can only happen as a result of width specifiers, in which case we're using ASCII digits
-            s = ("00000000"+s).substring(s.length()+8-min);
-            len = StringValue.getStringLength(s);
-        }
-        if (len > max) {
+            for (int i = len; i < min; i++) {
+                sb.append('0');
+            }
+        } else if (len > max) {
             // the year is the only field we allow to be truncated
-            if (component.charAt(0) == 'Y') {
+            if (spec.component == 'Y') {
                 if (len == s.length()) {
                     // no wide characters
                     s = s.substring(s.length() - max);
@@ -554,7 +666,7 @@ public class FormatDate extends SystemFunction {
 
             }
         }
-        return s;
+        sb.append(s);
     }
 
     private static int[] getWidths(String widths) throws XPathException {
@@ -600,31 +712,6 @@ public class FormatDate extends SystemFunction {
         }
     }
 
-    private static String getNamedTimeZone(DateTimeValue value, String country, String format) throws XPathException {
-
-        int min = 1;
-        int comma = format.indexOf(',');
-        if (comma > 0) {
-            String widths = format.substring(comma);
-            int[] range = getWidths(widths);
-            min = range[0];
-        }
-//        if (format.charAt(0) == 'N' || format.charAt(0) == 'n') {
-//            if (min <= 5) {
-//                String tzname = NamedTimeZone.getTimeZoneNameForDate(value, country);
-//                if (format.charAt(0) == 'n') {
-//                    tzname = tzname.toLowerCase();
-//                }
-//                return tzname;
-//            } else {
-//                return NamedTimeZone.getOlsenTimeZoneName(value, country);
-//            }
-//        }
-        FastStringBuffer sbz = new FastStringBuffer(8);
-        value.appendTimezone(sbz);
-        return sbz.toString();
-    }
-
 }
 
 
@@ -37,6 +37,20 @@ public class Substring extends SystemFunction {
             	length = 0;
             }
         }
+        if (!sv.containsSurrogatePairs()) {
+            // fast path: character positions are the same as codepoint positions
+            int len = str.length();
+            double from = start - 1;
+            double to = (argument.length==2 ? len : from + length);
+            if (!(from < len && to > 0 && to > from)) {
+                // also catches NaN
+                return StringValue.EMPTY_STRING;
+            }
+            StringValue result = new StringValue(
+                    str.substring(from < 0 ? 0 : (int)from, to > len ? len : (int)to));
+            result.setContainsNoSurrogates();
+            return result;
+        }
         FastStringBuffer sb = new FastStringBuffer((int)length);
         int i=0;
         int pos=0;
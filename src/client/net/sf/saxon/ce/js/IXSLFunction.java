@@ -29,6 +29,7 @@ import com.google.gwt.dom.client.Document;
 import com.google.gwt.dom.client.Node;
 import com.google.gwt.user.client.Event;
 
+import java.util.HashMap;
 import java.util.logging.Logger;
 
 /**
@@ -38,15 +39,64 @@ import java.util.logging.Logger;
 public class IXSLFunction extends FunctionCall {
 
     private String localName;
+    private int operation;
     private Logger logger = Logger.getLogger("IXSLFunction");
     
+    private static final int UNKNOWN = -1;
+    private static final int WINDOW = 0;
+    private static final int EVAL = 1;
+    private static final int CALL = 2;
+    private static final int GET = 3;
+    private static final int PAGE = 4;
+    private static final int SOURCE = 5;
+    private static final int EVENT = 6;
+    private static final int PARSE_XML = 7;
+    private static final int SERIALIZE_XML = 8;
+
+    // for ixsl:call and ixsl:get with a literal property name, the property path split into
+    // its components; for ixsl:call the last component (the method name) is held separately
+    private JavaScriptObject memberPath = null;
+    private String memberName = null;
+
     private static int injectCount = 0;
 
+    // functions injected for ixsl:eval, indexed by script, with the scripts held in order of injection
+    // so that the oldest function can be removed from the global scope when the cache is full
+    private static final int EVAL_CACHE_SIZE = 64;
+    private static HashMap<String, String> evalCache = new HashMap<String, String>();
+    private static String[] evalCacheKeys = new String[EVAL_CACHE_SIZE];
+    private static int evalCacheNext = 0;
+
     public IXSLFunction(String localName, Expression[] arguments) {
         this.localName = localName;
+        this.operation = getOperation(localName);
         setArguments(arguments);
     }
 
+    private static int getOperation(String localName) {
+        if (localName.equals("window")) {
+            return WINDOW;
+        } else if (localName.equals("eval")) {
+            return EVAL;
+        } else if (localName.equals("call")) {
+            return CALL;
+        } else if (localName.equals("get")) {
+            return GET;
+        } else if (localName.equals("page")) {
+            return PAGE;
+        } else if (localName.equals("source")) {
+            return SOURCE;
+        } else if (localName.equals("event")) {
+            return EVENT;
+        } else if (localName.equals("parse-xml")) {
+            return PARSE_XML;
+        } else if (localName.equals("serialize-xml")) {
+            return SERIALIZE_XML;
+        } else {
+            return UNKNOWN;
+        }
+    }
+
     @Override
     public StructuredQName getFunctionName() {
         return new StructuredQName(NamespaceConstant.IXSL, "", localName);
@@ -54,7 +104,23 @@ public class IXSLFunction extends FunctionCall {
 
     @Override
     protected void checkArguments(ExpressionVisitor visitor) throws XPathException {
-
+        // if the property name is known statically, split the path once rather than on every call
+        if ((operation == CALL || operation == GET) && argument.length > 1 &&
+                argument[1] instanceof StringLiteral) {
+            String member = ((StringLiteral)argument[1]).getStringValue();
+            if (operation == GET) {
+                memberPath = jsSplitPath(member);
+            } else {
+                int lastDot = member.lastIndexOf('.');
+                if (lastDot > 0 && lastDot + 1 < member.length()) {
+                    memberPath = jsSplitPath(member.substring(0, lastDot));
+                    memberName = member.substring(lastDot + 1);
+                } else {
+                    memberPath = null;
+                    memberName = member;
+                }
+            }
+        }
     }
 
     @Override
@@ -137,6 +203,31 @@ public class IXSLFunction extends FunctionCall {
        return { type: typeof v, value: v}
     }-*/;
 
+    private static native JavaScriptObject jsSplitPath(String member)
+    /*-{
+       return member.split('.');
+    }-*/;
+
+    /**
+     * Get a JavaScript property using a property path that has already been split into its components
+     * @param target the JavaScript object owning the property
+     * @param props an array of the names of the properties to be followed in turn
+     * @return the result as a type/value pair
+     */
+    private static native JavaScriptObject jsPathTypeAndValue(JavaScriptObject target, JavaScriptObject props)
+    /*-{
+       var v = target;
+       for (var count = 0; count < props.length; count++){
+          v = v[props[count]];
+       }
+       return { type: typeof v, value: v}
+    }-*/;
+
+    private static native void jsDeleteProperty(JavaScriptObject target, String member)
+    /*-{
+       delete target[member];
+    }-*/;
+
     private static native double jsNumberProperty(JavaScriptObject target, String member)
     /*-{
        return target[member];
@@ -202,8 +293,13 @@ public class IXSLFunction extends FunctionCall {
 			 HTMLDocumentWrapper docWrapper =  new HTMLDocumentWrapper(doc, doc.getURL(), config, jsDocType);
 			 return SingletonIterator.makeIterator(docWrapper);
         } else {
-			DocType jsDocType = (page == Document.get())? DocType.UNKNOWN : DocType.NONHTML; 
-	        HTMLDocumentWrapper htmlDoc = new HTMLDocumentWrapper(page, page.getURL(), config, jsDocType);
+	        HTMLDocumentWrapper htmlDoc;
+	        if (page == Document.get()) {
+	        	// reuse the host page wrapper, and any node wrappers it has cached
+	        	htmlDoc = (HTMLDocumentWrapper)config.getHostPage();
+	        } else {
+	        	htmlDoc = new HTMLDocumentWrapper(page, page.getURL(), config, DocType.NONHTML);
+	        }
 	        HTMLNodeWrapper htmlNode = htmlDoc.wrap((Node) jsValue);
 	        return SingletonIterator.makeIterator(htmlNode);
         }          
@@ -273,17 +369,29 @@ public class IXSLFunction extends FunctionCall {
     }
     
        private SequenceIterator evaluateJsFunction(String script, XPathContext context) throws XPathException {
-	    	injectCount++;
-	    	String fnName = "fnName" + injectCount;
 	    	script = script.trim();
-	    	String fnScript = "function " + fnName + "() { return " + script + "; }";
-	    	JSObjectValue item =  new JSObjectValue(jsWindow());
-	    	JavaScriptObject target = (JavaScriptObject)convertToJavaScript(item);
-	        
-	        ScriptInjector.FromString fs = new ScriptInjector.FromString(fnScript);
-	        fs.setWindow(target);
-	        fs.inject();
+	    	JavaScriptObject target = jsWindow();
+	    	String fnName = evalCache.get(script);
+	    	if (fnName == null) {
+	    		injectCount++;
+	    		fnName = "fnName" + injectCount;
+	    		// assign the function to a property of window rather than declaring it: a global
+	    		// function declaration cannot be deleted when the function is evicted from the cache
+	    		String fnScript = "window." + fnName + " = function() { return " + script + "; };";
+	    		ScriptInjector.FromString fs = new ScriptInjector.FromString(fnScript);
+	    		fs.setWindow(target);
+	    		fs.inject();
+	    		String evicted = evalCacheKeys[evalCacheNext];
+	    		if (evicted != null) {
+	    			jsDeleteProperty(target, evalCache.remove(evicted));
+	    		}
+	    		evalCacheKeys[evalCacheNext] = script;
+	    		evalCacheNext = (evalCacheNext + 1) % EVAL_CACHE_SIZE;
+	    		evalCache.put(script, fnName);
+	    	}
 	        JavaScriptObject jsArgs = jsArray(0);
+	        // arbitrary script may modify the page
+	        HTMLDocumentWrapper.notifyMutation();
 	        try {
 		        Object result = getValueFromTypeValuePair(jsCall(target, fnName, jsArgs));
 		        return convertFromJavaScript(result, context.getConfiguration());
@@ -295,25 +403,34 @@ public class IXSLFunction extends FunctionCall {
        
     public SequenceIterator iterate(XPathContext context) throws XPathException {
     	try {
-        if (localName.equals("window")) {
+        switch (operation) {
+        case WINDOW: {
             Item item = new JSObjectValue(jsWindow());
             return SingletonIterator.makeIterator(item);
-
-        } else if (localName.equals("eval")) {
+        }
+        case EVAL: {
         	String script = argument[0].evaluateAsString(context).toString();
     	    return evaluateJsFunction(script, context);
-    	    
-        } else if (localName.equals("call")) {
+        }
+        case CALL: {
         	ValueRepresentation itemVal = (ValueRepresentation)argument[0].evaluateItem(context);
         	JavaScriptObject target = (JavaScriptObject)convertToJavaScript(itemVal);
         	if (target != null) {
 
                 // Addition to allow call of the form js:Math.sqrt(2)
-                String method = argument[1].evaluateAsString(context).toString();
-                int lastDot = method.lastIndexOf('.');
-                if (lastDot > 0 && lastDot + 1 < method.length()) {
-                    target = (JavaScriptObject)getValueFromTypeValuePair(jsSplitPropertyTypeAndValue(target, method.substring(0, lastDot)));
-                    method = method.substring(lastDot + 1);
+                String method;
+                if (memberName != null) {
+                    method = memberName;
+                    if (memberPath != null) {
+                        target = (JavaScriptObject)getValueFromTypeValuePair(jsPathTypeAndValue(target, memberPath));
+                    }
+                } else {
+                    method = argument[1].evaluateAsString(context).toString();
+                    int lastDot = method.lastIndexOf('.');
+                    if (lastDot > 0 && lastDot + 1 < method.length()) {
+                        target = (JavaScriptObject)getValueFromTypeValuePair(jsSplitPropertyTypeAndValue(target, method.substring(0, lastDot)));
+                        method = method.substring(lastDot + 1);
+                    }
                 }
 
 	            JavaScriptObject jsArgs = jsArray(argument.length - 2);
@@ -321,6 +438,8 @@ public class IXSLFunction extends FunctionCall {
 	                ValueRepresentation val = SequenceExtent.makeSequenceExtent(argument[i].iterate(context));
 	                jsSetArrayItem(jsArgs, i-2, convertToJavaScript(val));
 	            }
+	            // the called method may modify the page
+	            HTMLDocumentWrapper.notifyMutation();
 	            // Issue: if following throws an exception - GWT doesn't always allow it to be caught - it's rethrown
 	            // as a GWT unhandled exception
 	            try {
@@ -350,32 +469,43 @@ public class IXSLFunction extends FunctionCall {
         	} else {
             	throw(new XPathException("JavaScriptException in ixsl:call(): Call target object is null or undefined"));
         	}
-        } else if (localName.equals("get")) {
+        }
+        case GET: {
         	ValueRepresentation itemVal = (ValueRepresentation)argument[0].evaluateItem(context);
         	JavaScriptObject target = (JavaScriptObject)convertToJavaScript(itemVal);
         	if (target != null) {
-                String property = argument[1].evaluateAsString(context).toString();
+                String property = (memberPath != null ? null : argument[1].evaluateAsString(context).toString());
                 Object result;
                 try {
-                	result = getValueFromTypeValuePair(jsSplitPropertyTypeAndValue(target, property));
+                	if (memberPath != null) {
+                		result = getValueFromTypeValuePair(jsPathTypeAndValue(target, memberPath));
+                	} else {
+                		result = getValueFromTypeValuePair(jsSplitPropertyTypeAndValue(target, property));
+                	}
                 } catch(Exception e) {
+                	if (property == null) {
+                		property = argument[1].evaluateAsString(context).toString();
+                	}
                 	throw(new XPathException("JavaScriptException in ixsl:get() for property: " + property));
                 }
                 return convertFromJavaScript(result, context.getConfiguration());        		
         	} else {
             	throw(new XPathException("JavaScriptException in ixsl:get(): Get target object is null or undefined"));
         	}
-        } else if (localName.equals("page")) {
+        }
+        case PAGE:
             return SingletonIterator.makeIterator(context.getConfiguration().getHostPage());
-        } else if (localName.equals("source")) {
+        case SOURCE:
             return SingletonIterator.makeIterator(context.getController().getSourceNode());
-        } else if (localName.equals("event")) {
+        case EVENT: {
             Event event = (Event)context.getController().getUserData("Saxon-CE", "current-event");
             return SingletonIterator.makeIterator(new JSObjectValue(event));
-        } else if (localName.equals("parse-xml")) {
+        }
+        case PARSE_XML: {
         	String data = argument[0].evaluateAsString(context).toString();
         	return convertFromJavaScript(XMLDOM.parseXML(data), context.getConfiguration());
-        } else if (localName.equals("serialize-xml")) {
+        }
+        case SERIALIZE_XML: {
                 Item arg = argument[0].evaluateItem(context);
                 if (arg instanceof NodeInfo) {
                     Node node;
@@ -398,11 +528,12 @@ public class IXSLFunction extends FunctionCall {
                 } else {
                     return SingletonIterator.makeIterator(new StringValue(arg.getStringValue()));
                 }
-        } else {
+        }
+        default:
         	// previously there was no warning - strictly - this should be caught at compile time
         	logger.warning("No such IXSL function: '" + localName + "' - empty sequence returned");
         	return EmptyIterator.getInstance();
-        } // end of else
+        } // end of switch
     	} // end of try block
     	catch(XPathException e) {
             e.maybeSetLocation(this.getSourceLocator());
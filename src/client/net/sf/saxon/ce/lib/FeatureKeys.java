@@ -549,6 +549,23 @@ public abstract class FeatureKeys {
     public final static String VERSION_WARNING =
         "http://saxon.sf.net/feature/version-warning";
 
+    /**
+    *
+    * <p>Type of value: boolean</p>
+    *
+    *  <p>Indicates whether the bodies of templates are to be compiled when each template is
+    *  first invoked, rather than when the stylesheet is compiled. Match patterns are still
+    *  registered when the stylesheet is compiled. Static errors in the body of a template are
+    *  reported only if the template is used.</p>
+    *
+    * <p><i>Applies to Saxon editions: CE</i></p>
+    * @see client.net.sf.saxon.ce.Configuration#setLazyTemplateCompilation
+    * @see client.net.sf.saxon.ce.Configuration#isLazyTemplateCompilation
+    **/
+
+    public final static String LAZY_TEMPLATE_COMPILATION =
+        "http://saxon.sf.net/feature/lazy-template-compilation";
+
 
 // AUTO-GENERATED CODE: DO NOT EDIT
 
@@ -47,10 +47,19 @@ public class PrincipalStylesheetModule extends StylesheetModule {
     private HashMap<StructuredQName, Declaration> templateIndex =
             new HashMap<StructuredQName, Declaration>(20);
 
-    // Table of named stylesheet functions. A two level lookup, using first the arity and then
-    // the expanded name of the function.
-    private HashMap<Integer, HashMap<StructuredQName, Declaration>> functionIndex =
-            new HashMap(8);
+    // Table of named stylesheet functions, keyed by the expanded name and arity of the function.
+    private HashMap<FunctionKey, Declaration> functionIndex =
+            new HashMap<FunctionKey, Declaration>(20);
+
+    // Table of named stylesheet functions by expanded name only, holding one function of each name
+    // whatever its arity. Used by the single-argument function-available() function.
+    private HashMap<StructuredQName, Declaration> functionNameIndex =
+            new HashMap<StructuredQName, Declaration>(20);
+
+    // Table of attribute sets. Key is the name of the attribute set; value is the list of
+    // xsl:attribute-set declarations with that name, in declaration order.
+    private HashMap<StructuredQName, List<Declaration>> attributeSetIndex =
+            new HashMap<StructuredQName, List<Declaration>>(20);
 
     // map for allocating unique numbers to local parameter names. Key is a
     // StructuredQName; value is a boxed int.
@@ -276,8 +285,7 @@ public class PrincipalStylesheetModule extends StylesheetModule {
     }
 
     protected Declaration getFunctionDeclaration(StructuredQName name, int arity) {
-        HashMap<StructuredQName, Declaration> m = functionIndex.get(arity);
-        return (m == null ? null : m.get(name));
+        return functionIndex.get(new FunctionKey(name, arity));
     }
 
     /**
@@ -290,14 +298,8 @@ public class PrincipalStylesheetModule extends StylesheetModule {
     protected XSLFunction getFunction(StructuredQName name, int arity) {
         if (arity == -1) {
             // supports the single-argument function-available() function
-            for (Iterator<Integer> arities = functionIndex.keySet().iterator(); arities.hasNext();) {
-                int a = arities.next();
-                Declaration decl = getFunctionDeclaration(name, a);
-                if (decl != null) {
-                    return (XSLFunction)decl.getSourceElement();
-                }
-            }
-            return null;
+            Declaration decl = functionNameIndex.get(name);
+            return (decl == null ? null : (XSLFunction)decl.getSourceElement());
         } else {
             Declaration decl = getFunctionDeclaration(name, arity);
             return (decl == null ? null : (XSLFunction)decl.getSourceElement());
@@ -308,12 +310,49 @@ public class PrincipalStylesheetModule extends StylesheetModule {
         XSLFunction function = (XSLFunction)decl.getSourceElement();
         StructuredQName qName = function.getObjectName();
         int arity = function.getNumberOfArguments();
-        HashMap<StructuredQName, Declaration> m = functionIndex.get(arity);
-        if (m == null) {
-            m = new HashMap<StructuredQName, Declaration>();
-            functionIndex.put(arity, m);
+        functionIndex.put(new FunctionKey(qName, arity), decl);
+        functionNameIndex.put(qName, decl);
+    }
+
+    /**
+     * Key used to index stylesheet functions by name and arity
+     */
+
+    private static class FunctionKey {
+
+        private StructuredQName name;
+        private int arity;
+
+        public FunctionKey(StructuredQName name, int arity) {
+            this.name = name;
+            this.arity = arity;
+        }
+
+        public boolean equals(Object other) {
+            return other instanceof FunctionKey &&
+                    ((FunctionKey)other).arity == arity &&
+                    ((FunctionKey)other).name.equals(name);
+        }
+
+        public int hashCode() {
+            return name.hashCode() ^ arity;
+        }
+    }
+
+    /**
+     * Add an attribute set to the index
+     * @param decl The declaration wrapping an XSLAttributeSet object
+     */
+
+    protected void indexAttributeSet(Declaration decl) {
+        StructuredQName name = ((XSLAttributeSet)decl.getSourceElement()).getAttributeSetName();
+        List<Declaration> list = attributeSetIndex.get(name);
+        if (list == null) {
+            list = new ArrayList<Declaration>(2);
+            attributeSetIndex.put(name, list);
         }
-        m.put(qName, decl);
+        // declarations are indexed in reverse order, so add each one at the start of the list
+        list.add(0, decl);
     }
 
 
@@ -533,6 +572,7 @@ public class PrincipalStylesheetModule extends StylesheetModule {
             PreparedStylesheet pss = getPreparedStylesheet();
             //Configuration config = pss.getConfiguration();
             Executable exec = pss.getExecutable();
+            long start = System.currentTimeMillis();
 
             // Register template rules with the rule manager
 
@@ -547,18 +587,27 @@ public class PrincipalStylesheetModule extends StylesheetModule {
             // Call compile method for each top-level object in the stylesheet
             // Note, some declarations (templates) need to be compiled repeatedly if the module
             // is imported repeatedly; others (variables, functions) do not
+            // With lazy compilation, templates are compiled (and optimized) when first invoked
 
+            boolean lazy = pss.getCompilerInfo().isLazyTemplateCompilation();
             for (int i = 0; i < topLevel.size(); i++) {
                 Declaration decl = topLevel.get(i);
                 StyleElement snode = decl.getSourceElement();
                 if (!snode.isActionCompleted(StyleElement.ACTION_COMPILE)) {
                     snode.setActionCompleted(StyleElement.ACTION_COMPILE);
+                    if (lazy && snode instanceof XSLTemplate) {
+                        snode.setActionCompleted(StyleElement.ACTION_OPTIMIZE);
+                        ((XSLTemplate)snode).deferCompilation(exec, decl);
+                        continue;
+                    }
                     Expression inst = snode.compile(exec, decl);
                     if (inst != null) {
                         inst.setSourceLocator(snode);
                     }
                 }
             }
+            pss.reportCompilePhase("compile", start);
+            start = System.currentTimeMillis();
 
             // Call type-check method for each user-defined function in the stylesheet. This is no longer
             // done during the optimize step, to avoid functions being inlined before they are type-checked.
@@ -570,16 +619,15 @@ public class PrincipalStylesheetModule extends StylesheetModule {
 //                }
 //            }
 
-            for (Iterator<Integer> arities = functionIndex.keySet().iterator(); arities.hasNext();) {
-                for (Iterator<Declaration> fi = functionIndex.get(arities.next()).values().iterator(); fi.hasNext();) {
-                    Declaration decl = fi.next();
-                    StyleElement node = decl.getSourceElement();
-                    if (!node.isActionCompleted(StyleElement.ACTION_TYPECHECK)) {
-                            node.setActionCompleted(StyleElement.ACTION_TYPECHECK);
-                        ((XSLFunction)node).typeCheckBody();
-                    }
+            for (Declaration decl : functionIndex.values()) {
+                StyleElement node = decl.getSourceElement();
+                if (!node.isActionCompleted(StyleElement.ACTION_TYPECHECK)) {
+                    node.setActionCompleted(StyleElement.ACTION_TYPECHECK);
+                    ((XSLFunction)node).typeCheckBody();
                 }
             }
+            pss.reportCompilePhase("type check", start);
+            start = System.currentTimeMillis();
 
             if (getPreparedStylesheet().getErrorCount() > 0) {
                 // not much point carrying on
@@ -599,16 +647,15 @@ public class PrincipalStylesheetModule extends StylesheetModule {
                 }
             }
 
-            for (Iterator<Integer> arities = functionIndex.keySet().iterator(); arities.hasNext();) {
-                for (Iterator<Declaration> fi = functionIndex.get(arities.next()).values().iterator(); fi.hasNext();) {
-                    Declaration decl = fi.next();
-                    StyleElement node = decl.getSourceElement();
-                    if (!node.isActionCompleted(StyleElement.ACTION_OPTIMIZE)) {
-                        node.setActionCompleted(StyleElement.ACTION_OPTIMIZE);
-                        ((StylesheetProcedure) node).optimize(decl);
-                    }
+            for (Declaration decl : functionIndex.values()) {
+                StyleElement node = decl.getSourceElement();
+                if (!node.isActionCompleted(StyleElement.ACTION_OPTIMIZE)) {
+                    node.setActionCompleted(StyleElement.ACTION_OPTIMIZE);
+                    ((StylesheetProcedure) node).optimize(decl);
                 }
             }
+            pss.reportCompilePhase("optimize", start);
+            start = System.currentTimeMillis();
 
             // Fix up references to the default default decimal format
 
@@ -624,6 +671,7 @@ public class PrincipalStylesheetModule extends StylesheetModule {
 
             RuleManager ruleManager = getPreparedStylesheet().getRuleManager();
             ruleManager.computeRankings();
+            pss.reportCompilePhase("rank", start);
 
         } catch (RuntimeException err) {
         // if syntax errors were reported earlier, then exceptions may occur during this phase
@@ -650,23 +698,17 @@ public class PrincipalStylesheetModule extends StylesheetModule {
     protected boolean getAttributeSets(StructuredQName name, List<Declaration> list)
             throws XPathException {
 
-        boolean found = false;
+        // use all the attribute sets with this name, if there are several
 
-        // search for the named attribute set, using all of them if there are several with the
-        // same name
-
-        for (int i = 0; i < topLevel.size(); i++) {
-            Declaration decl = topLevel.get(i);
-            if (decl.getSourceElement() instanceof XSLAttributeSet) {
-                XSLAttributeSet t = (XSLAttributeSet)decl.getSourceElement();
-                if (t.getAttributeSetName().equals(name)) {
-                    t.incrementReferenceCount();
-                    list.add(decl);
-                    found = true;
-                }
-            }
+        List<Declaration> decls = attributeSetIndex.get(name);
+        if (decls == null) {
+            return false;
+        }
+        for (Declaration decl : decls) {
+            ((XSLAttributeSet)decl.getSourceElement()).incrementReferenceCount();
+            list.add(decl);
         }
-        return found;
+        return true;
     }
 
     /**
@@ -12,7 +12,6 @@ import client.net.sf.saxon.ce.lib.NamespaceConstant;
 import client.net.sf.saxon.ce.om.*;
 import client.net.sf.saxon.ce.pattern.*;
 import client.net.sf.saxon.ce.trace.Location;
-import client.net.sf.saxon.ce.trace.XSLTTraceListener;
 import client.net.sf.saxon.ce.trans.Err;
 import client.net.sf.saxon.ce.trans.XPathException;
 import client.net.sf.saxon.ce.tree.iter.AxisIterator;
@@ -891,7 +890,7 @@ public abstract class StyleElement extends ElementImpl
             exp = makeExpressionVisitor().typeCheck(exp, Type.ITEM_TYPE);
             exp = ExpressionTool.resolveCallsToCurrentFunction(exp, getConfiguration());
             if (LogConfiguration.loggingIsEnabled() && LogController.traceIsEnabled()) {
-            	CodeInjector injector = ((XSLTTraceListener)LogController.getTraceListener()).getCodeInjector();
+            	CodeInjector injector = LogController.getCodeInjector();
             	String name = "";
             	exp = injector.inject(exp, getStaticContext(), Location.XPATH_IN_XSLT, new StructuredQName("", "", name));
             }
@@ -1274,7 +1273,7 @@ public abstract class StyleElement extends ElementImpl
                     Instruction text = new ValueOf(new StringLiteral(node.getStringValue()), false);
                     text.setSourceLocator(this);
                     if (LogConfiguration.loggingIsEnabled() && LogController.traceIsEnabled()) {
-                    	CodeInjector injector = ((XSLTTraceListener)LogController.getTraceListener()).getCodeInjector();
+                    	CodeInjector injector = LogController.getCodeInjector();
                         Expression tracer = injector.inject(text, getStaticContext(), StandardNames.XSL_TEXT, null);
                         tracer.setSourceLocator(this);
                         if (tracer instanceof Instruction) {
@@ -1361,7 +1360,7 @@ public abstract class StyleElement extends ElementImpl
 			return child;
 			// this can happen, for example, after optimizing a compile-time xsl:if
 		}
-        CodeInjector injector = ((XSLTTraceListener)LogController.getTraceListener()).getCodeInjector();
+        CodeInjector injector = LogController.getCodeInjector();
 
         int construct = source.getFingerprint();
         StructuredQName qName;
@@ -136,6 +136,10 @@ public class XSLAttributeSet extends StyleElement implements StylesheetProcedure
         return o;
     }
 
+    protected void index(Declaration decl, PrincipalStylesheetModule top) throws XPathException {
+        top.indexAttributeSet(decl);
+    }
+
     public void validate(Declaration decl) throws XPathException {
 
         if (validated) return;
@@ -3,6 +3,7 @@ package client.net.sf.saxon.ce.style;
 import com.google.gwt.logging.client.LogConfiguration;
 
 import client.net.sf.saxon.ce.LogController;
+import client.net.sf.saxon.ce.PreparedStylesheet;
 import client.net.sf.saxon.ce.expr.*;
 import client.net.sf.saxon.ce.expr.instruct.*;
 import client.net.sf.saxon.ce.lib.NamespaceConstant;
@@ -136,6 +137,8 @@ public final class XSLTemplate extends StyleElement implements StylesheetProcedu
         		ixslPreventDefault = atts.getValue(a).equals("yes");
         	} else if (f.equals(StandardNames.IXSL_EVENT_PROPERTY)) {
         		ixslEventProperty = atts.getValue(a);
+        	} else if (f.equals(StandardNames.IXSL_EVENT_POLICY)) {
+        		compiledTemplate.setEventDelay(parseEventPolicy(Whitespace.trim(atts.getValue(a))));
         	} else {
         		checkUnknownAttribute(nc);
         	}
@@ -255,6 +258,35 @@ public final class XSLTemplate extends StyleElement implements StylesheetProcedu
         }
 	}
 
+    /**
+     * Parse the value of the ixsl:event-policy attribute. The value is "immediate" (the default),
+     * "animation-frame", or "debounce" optionally followed by an interval in milliseconds.
+     * @param value the attribute value, trimmed
+     * @return the event delay, as defined for {@link Template#setEventDelay}
+     */
+
+    private int parseEventPolicy(String value) throws XPathException {
+        if (value.equals("immediate")) {
+            return -1;
+        } else if (value.equals("animation-frame")) {
+            return 0;
+        } else if (value.equals("debounce")) {
+            return 100;
+        } else if (value.startsWith("debounce ")) {
+            try {
+                int delay = Integer.parseInt(Whitespace.trim(value.substring(9)));
+                if (delay > 0) {
+                    return delay;
+                }
+            } catch (NumberFormatException err) {
+                // fall through
+            }
+        }
+        compileError("Invalid value for ixsl:event-policy (" + value +
+                "): must be immediate, animation-frame, or debounce followed by an optional interval", "XTSE0020");
+        return -1;
+    }
+
     public void validate(Declaration decl) throws XPathException {
         stackFrameMap = new SlotManager();
         checkTopLevel(null);
@@ -354,6 +386,51 @@ public final class XSLTemplate extends StyleElement implements StylesheetProcedu
         return null;
     }
 
+    /**
+     * Arrange for the template to be compiled and optimized when it is first invoked, rather than now.
+     * This is used when the stylesheet is compiled with lazy template compilation.
+     * @param exec the executable
+     * @param decl the declaration of this template
+     */
+
+    public void deferCompilation(final Executable exec, final Declaration decl) {
+        final PreparedStylesheet pss = getPreparedStylesheet();
+        // everything except the body is known once the template has been validated, and is needed
+        // before the template is first invoked, for example to check the initial template
+        compiledTemplate.setMatchPattern(match);
+        compiledTemplate.setStackFrameMap(stackFrameMap);
+        compiledTemplate.setExecutable(getExecutable());
+        compiledTemplate.setSourceLocator(this);
+        compiledTemplate.setHasRequiredParams(hasRequiredParams);
+        compiledTemplate.setRequiredType(requiredType);
+        compiledTemplate.setTemplateName(getObjectName());
+        compiledTemplate.setDeferredCompilation(new Template.DeferredCompilation() {
+            public void compile() throws XPathException {
+                int errors = pss.getErrorCount();
+                try {
+                    XSLTemplate.this.compile(exec, decl);
+                    if (pss.getErrorCount() == errors) {
+                        optimize(decl);
+                    }
+                } catch (RuntimeException err) {
+                    // as in PrincipalStylesheetModule.compileStylesheet(), this can be a consequence of earlier errors
+                    if (pss.getErrorCount() == errors) {
+                        throw err;
+                    }
+                }
+                if (pss.getErrorCount() != errors) {
+                    XPathException err = pss.getLastError();
+                    if (err == null) {
+                        err = new XPathException("Static error in template " + diagnosticId);
+                        err.setIsStaticError(true);
+                    }
+                    throw err;
+                }
+            }
+        });
+        pss.addDeferredTemplate(compiledTemplate);
+    }
+
     /**
      * Registers the template rule with each Mode that it belongs to.
      * @param declaration Associates this template with a stylesheet module (in principle an xsl:template
@@ -0,0 +1,280 @@
+package client.net.sf.saxon.ce.trace;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.logging.Logger;
+
+import client.net.sf.saxon.ce.expr.XPathContext;
+import client.net.sf.saxon.ce.expr.parser.CodeInjector;
+import client.net.sf.saxon.ce.lib.StandardErrorListener;
+import client.net.sf.saxon.ce.lib.TraceListener;
+import client.net.sf.saxon.ce.om.Item;
+import client.net.sf.saxon.ce.om.StructuredQName;
+import client.net.sf.saxon.ce.tree.util.FastStringBuffer;
+
+/**
+ * A trace listener that records the time spent in each template and function, for use as a profiler.
+ * Only the bodies of templates and functions are instrumented (see {@link TimingCodeInjector}), and
+ * nothing is written to the log while the transformation is running: the call counts, inclusive and
+ * exclusive times, and caller/callee counts are accumulated in memory and reported as a single
+ * JSON object when the transformation finishes.
+ *
+ * <p>Inclusive time is only counted for the outermost active call of a recursive template or
+ * function, so that the time spent in nested calls is not counted more than once.</p>
+ */
+
+public class TimingTraceListener implements TraceListener {
+
+    private static Logger logger = Logger.getLogger("Profile");
+
+    /**
+     * Statistics for one template or function
+     */
+
+    private static class Stats {
+        InstructionInfo info;
+        int count;
+        int active;                 // number of calls currently on the stack
+        double inclusive;
+        double exclusive;
+        HashMap<Stats, int[]> callers = new HashMap<Stats, int[]>();
+
+        Stats(InstructionInfo info) {
+            this.info = info;
+        }
+    }
+
+    private HashMap<InstructionInfo, Stats> stats = new HashMap<InstructionInfo, Stats>();
+    private Stats[] frames = new Stats[64];
+    private double[] startTimes = new double[64];
+    private double[] childTimes = new double[64];
+    private int depth = 0;
+    private double openTime;
+    private String lastReport = null;
+
+    /**
+     * Get the associated CodeInjector to be used at compile time to generate the tracing calls
+     */
+
+    public CodeInjector getCodeInjector() {
+        return new TimingCodeInjector();
+    }
+
+    /**
+     * Called at start: discards any statistics from a previous run
+     */
+
+    public void open() {
+        stats.clear();
+        depth = 0;
+        openTime = now();
+    }
+
+    /**
+     * Called at end: logs the statistics as JSON
+     */
+
+    public void close() {
+        lastReport = makeReport(now() - openTime);
+        logger.info(lastReport);
+        stats.clear();
+        depth = 0;
+    }
+
+    /**
+     * Called when the transformation fails: the statistics are discarded
+     */
+
+    public void terminate() {
+        stats.clear();
+        depth = 0;
+    }
+
+    /**
+     * Called on entry to a template or function body
+     */
+
+    public void enter(InstructionInfo info, XPathContext context) {
+        if (info.getConstructType() == Location.TRACE_CALL) {
+            return;
+        }
+        Stats s = stats.get(info);
+        if (s == null) {
+            s = new Stats(info);
+            stats.put(info, s);
+        }
+        s.count++;
+        s.active++;
+        if (depth > 0) {
+            Stats caller = frames[depth - 1];
+            int[] n = s.callers.get(caller);
+            if (n == null) {
+                s.callers.put(caller, new int[]{1});
+            } else {
+                n[0]++;
+            }
+        }
+        if (depth == frames.length) {
+            Stats[] f2 = new Stats[depth * 2];
+            System.arraycopy(frames, 0, f2, 0, depth);
+            frames = f2;
+            double[] s2 = new double[depth * 2];
+            System.arraycopy(startTimes, 0, s2, 0, depth);
+            startTimes = s2;
+            double[] c2 = new double[depth * 2];
+            System.arraycopy(childTimes, 0, c2, 0, depth);
+            childTimes = c2;
+        }
+        frames[depth] = s;
+        childTimes[depth] = 0;
+        startTimes[depth++] = now();
+    }
+
+    /**
+     * Called on exit from a template or function body
+     */
+
+    public void leave(InstructionInfo info) {
+        if (info.getConstructType() == Location.TRACE_CALL) {
+            return;
+        }
+        double end = now();
+        // TraceExpression does not call leave() if the body throws an error, so unwind any frames
+        // left behind (this can only happen if the error was recovered, for example in an event handler)
+        while (depth > 0) {
+            Stats s = frames[--depth];
+            double elapsed = end - startTimes[depth];
+            s.exclusive += elapsed - childTimes[depth];
+            if (--s.active == 0) {
+                s.inclusive += elapsed;
+            }
+            if (depth > 0) {
+                childTimes[depth - 1] += elapsed;
+            }
+            frames[depth] = null;
+            if (s.info == info) {
+                break;
+            }
+        }
+    }
+
+    public void startCurrentItem(Item currentItem) {
+        // no action
+    }
+
+    public void endCurrentItem(Item currentItem) {
+        // no action
+    }
+
+    /**
+     * Get the report produced at the end of the most recent successful transformation
+     * @return the report as a JSON string, or null if no transformation has completed
+     */
+
+    public String getLastReport() {
+        return lastReport;
+    }
+
+    private String makeReport(double total) {
+        List<Stats> list = new ArrayList<Stats>(stats.values());
+        Collections.sort(list, new Comparator<Stats>() {
+            public int compare(Stats a, Stats b) {
+                return Double.compare(b.exclusive, a.exclusive);
+            }
+        });
+        FastStringBuffer sb = new FastStringBuffer(256);
+        sb.append("{\"total\":");
+        sb.append(format(total));
+        sb.append(",\"profile\":[");
+        for (int i = 0; i < list.size(); i++) {
+            Stats s = list.get(i);
+            if (i != 0) {
+                sb.append(',');
+            }
+            sb.append("\n{");
+            appendDescription(sb, s.info);
+            sb.append(",\"count\":");
+            sb.append(Integer.toString(s.count));
+            sb.append(",\"inclusive\":");
+            sb.append(format(s.inclusive));
+            sb.append(",\"exclusive\":");
+            sb.append(format(s.exclusive));
+            sb.append(",\"callers\":[");
+            boolean first = true;
+            for (Stats caller : s.callers.keySet()) {
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                sb.append('{');
+                appendDescription(sb, caller.info);
+                sb.append(",\"count\":");
+                sb.append(Integer.toString(s.callers.get(caller)[0]));
+                sb.append('}');
+            }
+            sb.append("]}");
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
+    private static void appendDescription(FastStringBuffer sb, InstructionInfo info) {
+        StructuredQName name = info.getObjectName();
+        Object match = info.getProperty("match");
+        sb.append("\"construct\":");
+        appendString(sb, XSLTTraceListener.tagName(info.getConstructType()));
+        if (name != null) {
+            sb.append(",\"name\":");
+            appendString(sb, name.getDisplayName());
+        }
+        if (match != null) {
+            sb.append(",\"match\":");
+            appendString(sb, match.toString());
+        }
+        sb.append(",\"module\":");
+        appendString(sb, StandardErrorListener.abbreviatePath(info.getSystemId()));
+        sb.append(",\"line\":");
+        sb.append(Integer.toString(info.getLineNumber()));
+    }
+
+    private static void appendString(FastStringBuffer sb, String s) {
+        if (s == null) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\');
+                sb.append(c);
+            } else if (c < 32) {
+                sb.append(' ');
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    private static String format(double millis) {
+        return Double.toString(Math.round(millis * 1000) / 1000.0);
+    }
+
+    /**
+     * Get a high-resolution timestamp in milliseconds, using the browser's performance timer if available
+     */
+
+    private static native double now() /*-{
+        var p = $wnd.performance;
+        return (p && p.now) ? p.now() : new Date().getTime();
+    }-*/;
+
+}
+
+// This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+// If a copy of the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+// This Source Code Form is “Incompatible With Secondary Licenses”, as defined by the Mozilla Public License, v. 2.0.
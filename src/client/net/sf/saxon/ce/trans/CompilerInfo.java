@@ -17,6 +17,7 @@ public class CompilerInfo {
     private transient ErrorListener errorListener;
     private int recoveryPolicy = Configuration.RECOVER_WITH_WARNINGS;
     private boolean versionWarning;
+    private boolean lazyTemplateCompilation;
     private StructuredQName defaultInitialMode;
     private StructuredQName defaultInitialTemplate;
 
@@ -37,6 +38,7 @@ public class CompilerInfo {
         errorListener = info.errorListener;
         recoveryPolicy = info.recoveryPolicy;
         versionWarning = info.versionWarning;
+        lazyTemplateCompilation = info.lazyTemplateCompilation;
         defaultInitialMode = info.defaultInitialMode;
         defaultInitialTemplate = info.defaultInitialTemplate;
     }
@@ -162,6 +164,29 @@ public class CompilerInfo {
     public StructuredQName getDefaultInitialMode() {
         return defaultInitialMode;
     }
+
+    /**
+     * Say whether the bodies of templates are to be compiled lazily. If this option is set, the
+     * match patterns of template rules are registered when the stylesheet is compiled, but the body
+     * of each template is compiled and optimized only when the template is first invoked. This reduces
+     * the time taken to compile a large stylesheet of which only a small part is used; the cost is that
+     * static errors in the body of a template are not reported until the template is used.
+     * @param lazy true if templates are to be compiled on first use
+     */
+
+    public void setLazyTemplateCompilation(boolean lazy) {
+        lazyTemplateCompilation = lazy;
+    }
+
+    /**
+     * Ask whether the bodies of templates are to be compiled lazily
+     * @return true if templates are to be compiled on first use, as set using
+     * {@link #setLazyTemplateCompilation}
+     */
+
+    public boolean isLazyTemplateCompilation() {
+        return lazyTemplateCompilation;
+    }
 }
 
 // This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. 
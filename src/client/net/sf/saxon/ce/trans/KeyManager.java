@@ -2,6 +2,7 @@ package client.net.sf.saxon.ce.trans;
 
 import client.net.sf.saxon.ce.Configuration;
 import client.net.sf.saxon.ce.Controller;
+import client.net.sf.saxon.ce.dom.HTMLDocumentWrapper;
 import client.net.sf.saxon.ce.expr.*;
 import client.net.sf.saxon.ce.expr.instruct.SlotManager;
 import client.net.sf.saxon.ce.expr.sort.LocalOrderComparer;
@@ -80,6 +81,9 @@ public class KeyManager {
                                      // the key name plus the primitive item type
                                      // to the HashMap that is the actual index
                                      // of key/value pairs.
+    private transient HashMap<DocumentInfo, Integer> htmlMutationCounts;
+                                     // for each HTML DOM document that is indexed, the value of
+                                     // HTMLDocumentWrapper.getMutationCount() when its indexes were built
 
     /**
      * Create a KeyManager and initialise variables
@@ -530,6 +534,12 @@ public class KeyManager {
         HashMap<Long, Object> indexList;
         if (indexRef==null) {
             indexList = new HashMap<Long, Object>(10);
+            if (doc instanceof HTMLDocumentWrapper) {
+                if (htmlMutationCounts == null) {
+                    htmlMutationCounts = new HashMap<DocumentInfo, Integer>(4);
+                }
+                htmlMutationCounts.put(doc, HTMLDocumentWrapper.getMutationCount());
+            }
             // Ensure there is a firm reference to the indexList for the duration of a transformation
             // But for keys associated with temporary trees, or documents that have been discarded from
             // the document pool, keep the reference within the document node itself.
@@ -546,6 +556,24 @@ public class KeyManager {
         indexList.put(Long.valueOf(((long)keyFingerprint)<<32 | itemType.getFingerprint()), index);
     }
 
+    /**
+     * Release the indexes built for the documents used by a transformation. This is called when a
+     * transformation finishes, because the compiled stylesheet that owns the KeyManager may be shared
+     * by other processors on the page and may outlive the documents. The indexes of the host HTML page
+     * are retained, as the page lasts as long as the stylesheet, and its indexes are likely to be needed
+     * again by event handlers.
+     */
+
+    public synchronized void releaseDocumentIndexes() {
+        if (docIndexes != null) {
+            for (Iterator<DocumentInfo> docs = docIndexes.keySet().iterator(); docs.hasNext();) {
+                if (!(docs.next() instanceof HTMLDocumentWrapper)) {
+                    docs.remove();
+                }
+            }
+        }
+    }
+
     /**
      * Get the index associated with a particular key, a particular source document,
      * and a particular primitive item type
@@ -562,6 +590,13 @@ public class KeyManager {
         }
         HashMap<Long, Object> docIndex = docIndexes.get(doc);
         if (docIndex==null) return null;
+        if (doc instanceof HTMLDocumentWrapper &&
+                htmlMutationCounts.get(doc).intValue() != HTMLDocumentWrapper.getMutationCount()) {
+            // the DOM may have changed since the indexes were built
+            docIndexes.remove(doc);
+            htmlMutationCounts.remove(doc);
+            return null;
+        }
         return docIndex.get(Long.valueOf(((long)keyFingerprint)<<32 | itemType.getFingerprint()));
     }
 
@@ -162,6 +162,38 @@ public class Mode  {
         return !hasRules;
     }
 
+    /**
+     * Ask whether any template rule in this mode might match a given node, considering only the kind
+     * and name of the node. This is much cheaper than {@link #getRule}, because no patterns are evaluated;
+     * it is used to discard nodes quickly, for example when looking for a rule to handle a browser event.
+     * @param node the node to be tested
+     * @return false if it is certain that no rule in this mode matches the node
+     */
+
+    public boolean mightMatch(NodeInfo node) {
+        if (genericNodeRuleChain != null) {
+            return true;
+        }
+        switch (node.getNodeKind()) {
+            case Type.DOCUMENT:
+                return documentRuleChain != null;
+            case Type.ELEMENT:
+                return unnamedElementRuleChain != null || namedElementRuleChains.containsKey(node.getFingerprint());
+            case Type.ATTRIBUTE:
+                return unnamedAttributeRuleChain != null || namedAttributeRuleChains.containsKey(node.getFingerprint());
+            case Type.TEXT:
+                return textRuleChain != null;
+            case Type.COMMENT:
+                return commentRuleChain != null;
+            case Type.PROCESSING_INSTRUCTION:
+                return processingInstructionRuleChain != null;
+            case Type.NAMESPACE:
+                return namespaceRuleChain != null;
+            default:
+                return true;
+        }
+    }
+
     /**
      * Set the policy for handling recoverable errrors. Note that for some errors the decision can be
      * made at run-time, but for the "ambiguous template match" error, the decision is (since 9.2)
@@ -18,6 +18,8 @@ public class InsertAction extends PendingUpdateAction {
     public static final int BEFORE = 2;
     public static final int AFTER = 3;
 
+    private static final int DOCUMENT_FRAGMENT_NODE = 11;
+
     /**
      * Create an InsertAction
      * @param content an HTML document node whose children represent the content sequence to be inserted
@@ -41,6 +43,11 @@ public class InsertAction extends PendingUpdateAction {
     public void apply(XPathContext context) {
         switch (position) {
             case FIRST: {
+                if (content.getNodeType() == DOCUMENT_FRAGMENT_NODE) {
+                    // inserting a fragment moves all its children in a single DOM operation
+                    targetNode.insertBefore(content, targetNode.getFirstChild());
+                    break;
+                }
                 NodeList list = content.getChildNodes();
                 int count = list.getLength();
                 for (int i=count-1; i>=0; i--) {
@@ -49,6 +56,10 @@ public class InsertAction extends PendingUpdateAction {
                 break;
             }
             case LAST:{
+                if (content.getNodeType() == DOCUMENT_FRAGMENT_NODE) {
+                    targetNode.appendChild(content);
+                    break;
+                }
                 while (content.hasChildNodes()) {
                     targetNode.appendChild(content.getFirstChild());
                 }
@@ -87,6 +98,28 @@ public class InsertAction extends PendingUpdateAction {
         return targetNode;
     }
 
+    /**
+     * Get the position of the inserted nodes relative to the target node
+     * @return one of {@link #FIRST}, {@link #LAST}, {@link #BEFORE}, or {@link #AFTER}
+     */
+
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Combine another insert action with this one, so that both are applied in a single operation.
+     * The content of the other action is moved to the end of the content of this action; this does not
+     * modify the HTML page. Both actions must insert nodes as the last children of the same target node.
+     * @param other the action to be combined with this one, which must not be applied separately
+     */
+
+    public void merge(InsertAction other) {
+        while (other.content.hasChildNodes()) {
+            content.appendChild(other.content.getFirstChild());
+        }
+    }
+
 }
 
 // This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. 
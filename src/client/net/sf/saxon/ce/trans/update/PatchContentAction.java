@@ -0,0 +1,220 @@
+package client.net.sf.saxon.ce.trans.update;
+
+import client.net.sf.saxon.ce.expr.XPathContext;
+import com.google.gwt.dom.client.Element;
+import com.google.gwt.dom.client.Node;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * A pending update action that replaces the content of a target node with new content, as for
+ * <code>method="ixsl:replace-content"</code>, but does so by modifying the existing content in place.
+ * Children of the new content are matched against existing children of the target: elements match
+ * if they have the same name and the same value (or absence) of the key attribute, and text nodes
+ * and comments match in order. Matched nodes are kept, with their attributes and content patched
+ * recursively; nodes that are unmatched are inserted or removed. Unchanged subtrees are therefore left
+ * alone, which avoids the cost of rebuilding them and preserves state such as focus and scroll position.
+ */
+public class PatchContentAction extends PendingUpdateAction {
+
+    private Node content;
+    private Node targetNode;
+    private String keyAttribute;
+
+    /**
+     * Create a PatchContentAction
+     * @param content a document fragment whose children represent the new content of the target node
+     * @param targetNode the node whose content is to be replaced
+     * @param keyAttribute the name of an attribute (typically "id") used to match elements in the new
+     * content to elements in the existing content, or null if elements are to be matched by name only
+     */
+
+    public PatchContentAction(Node content, Node targetNode, String keyAttribute) {
+        this.content = content;
+        this.targetNode = targetNode;
+        this.keyAttribute = keyAttribute;
+    }
+
+    /**
+     * Apply the pending update action to the affected nodes
+     *
+     * @param context the XPath evaluation context
+     */
+
+    public void apply(XPathContext context) {
+        patchChildren(targetNode, content);
+    }
+
+    /**
+     * Make the children of a live node the same as the children of a new node, reusing
+     * existing children where they match
+     * @param live the node in the HTML page
+     * @param fresh the node holding the new content; its children may be moved into the live node
+     */
+
+    private void patchChildren(Node live, Node fresh) {
+        // queues of existing children that are candidates for matching, indexed by key
+        HashMap<String, List<Node>> candidates = new HashMap<String, List<Node>>();
+        for (Node n = live.getFirstChild(); n != null; n = n.getNextSibling()) {
+            String key = getKey(n);
+            List<Node> queue = candidates.get(key);
+            if (queue == null) {
+                queue = new ArrayList<Node>();
+                candidates.put(key, queue);
+            }
+            queue.add(n);
+        }
+
+        // first pass: decide which existing child (if any) each new child corresponds to
+        int count = fresh.getChildCount();
+        Node[] freshChildren = new Node[count];
+        Node[] matches = new Node[count];
+        HashSet<Node> matched = new HashSet<Node>();
+        HashMap<String, int[]> taken = new HashMap<String, int[]>();
+        int i = 0;
+        for (Node f = fresh.getFirstChild(); f != null; f = f.getNextSibling()) {
+            freshChildren[i] = f;
+            String key = getKey(f);
+            List<Node> queue = candidates.get(key);
+            if (queue != null) {
+                int[] next = taken.get(key);
+                if (next == null) {
+                    next = new int[1];
+                    taken.put(key, next);
+                }
+                if (next[0] < queue.size()) {
+                    matches[i] = queue.get(next[0]++);
+                    matched.add(matches[i]);
+                }
+            }
+            i++;
+        }
+
+        // second pass: put the children in the right order, patching matched children and
+        // removing unmatched ones as we go
+        Node cursor = live.getFirstChild();
+        for (i = 0; i < count; i++) {
+            while (cursor != null && !matched.contains(cursor)) {
+                Node next = cursor.getNextSibling();
+                live.removeChild(cursor);
+                cursor = next;
+            }
+            Node node = matches[i];
+            if (node == null || !patchNode(node, freshChildren[i])) {
+                if (node != null) {
+                    // the node could not be patched, so it is replaced
+                    matched.remove(node);
+                    if (node == cursor) {
+                        cursor = cursor.getNextSibling();
+                    }
+                    live.removeChild(node);
+                }
+                node = freshChildren[i];
+            }
+            if (node == cursor) {
+                cursor = cursor.getNextSibling();
+            } else {
+                live.insertBefore(node, cursor);
+            }
+        }
+        while (cursor != null) {
+            Node next = cursor.getNextSibling();
+            live.removeChild(cursor);
+            cursor = next;
+        }
+    }
+
+    /**
+     * Make an existing node the same as a new node with the same key
+     * @param live the existing node
+     * @param fresh the new node
+     * @return false if the existing node could not be patched and must be replaced by the new node
+     */
+
+    private boolean patchNode(Node live, Node fresh) {
+        if (live.getNodeType() == Node.ELEMENT_NODE) {
+            if (!syncAttributes((Element)live, (Element)fresh)) {
+                return false;
+            }
+            patchChildren(live, fresh);
+        } else {
+            String value = fresh.getNodeValue();
+            if (!value.equals(live.getNodeValue())) {
+                live.setNodeValue(value);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the key used to match a new node with an existing node
+     * @param node the node
+     * @return a key comprising the node type, the node name, and the value of the key attribute if
+     * the node is an element and has this attribute
+     */
+
+    private String getKey(Node node) {
+        String key = node.getNodeType() + node.getNodeName();
+        if (keyAttribute != null && node.getNodeType() == Node.ELEMENT_NODE) {
+            String keyValue = ((Element)node).getAttribute(keyAttribute);
+            if (keyValue != null && keyValue.length() != 0) {
+                key += '#' + keyValue;
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Make the attributes of an existing element the same as those of a new element
+     * @param live the existing element
+     * @param fresh the new element
+     * @return false if the browser does not support the methods needed, in which case no changes are made
+     */
+
+    private static native boolean syncAttributes(Element live, Element fresh) /*-{
+        if (!live.hasAttribute || !live.attributes) {
+            return false;
+        }
+        var la = live.attributes;
+        for (var i = la.length - 1; i >= 0; i--) {
+            var a = la[i];
+            if (a.namespaceURI) {
+                if (!fresh.hasAttributeNS(a.namespaceURI, a.localName)) {
+                    live.removeAttributeNS(a.namespaceURI, a.localName);
+                }
+            } else if (!fresh.hasAttribute(a.name)) {
+                live.removeAttribute(a.name);
+            }
+        }
+        var fa = fresh.attributes;
+        for (var i = 0; i < fa.length; i++) {
+            var a = fa[i];
+            if (a.namespaceURI) {
+                if (live.getAttributeNS(a.namespaceURI, a.localName) !== a.value) {
+                    live.setAttributeNS(a.namespaceURI, a.name, a.value);
+                }
+            } else if (live.getAttribute(a.name) !== a.value) {
+                live.setAttribute(a.name, a.value);
+            }
+        }
+        return true;
+    }-*/;
+
+    /**
+     * Get the target node of the update action
+     * @return the target node, the node to which this update action applies. Returns null in the
+     *         case of a delete action, which affects multiple nodes.
+     */
+
+    public Node getTargetNode() {
+        return targetNode;
+    }
+
+}
+
+// This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+// If a copy of the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+// This Source Code Form is “Incompatible With Secondary Licenses”, as defined by the Mozilla Public License, v. 2.0.
@@ -1,10 +1,14 @@
 package client.net.sf.saxon.ce.trans.update;
 
 import client.net.sf.saxon.ce.Configuration;
+import client.net.sf.saxon.ce.dom.HTMLDocumentWrapper;
 import client.net.sf.saxon.ce.expr.XPathContext;
 import client.net.sf.saxon.ce.trans.XPathException;
+import com.google.gwt.dom.client.Node;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -18,6 +22,9 @@ public class PendingUpdateList {
 
     private Logger logger = Logger.getLogger("PendingUpdateList");
 
+    private int actionCount = 0;
+    private int appliedActionCount = 0;
+
     /**
      * Create a Pending Update List
      */
@@ -37,51 +44,155 @@ public class PendingUpdateList {
     }
 
     /**
-     * Apply the pending updates
+     * Apply the pending updates. The actions are first analyzed, without modifying the page, to remove
+     * redundant operations: actions affecting nodes that are deleted by another action, repeated deletions,
+     * and all but the last of several actions on the same attribute. Insertions of content as the last
+     * children of the same node are combined into a single insertion. The remaining actions are then
+     * applied in phases: deletions, then insertions, then attribute changes. Note that some actions read
+     * the page as they are applied: in particular, an ixsl:patch-content action compares its new content
+     * with the existing content of the target after the deletions have been made.
      * @param context the XPath dynamic evaluation context
      */
 
     public synchronized void apply(XPathContext context) throws XPathException {
     	String state = "";
+    	int applied = 0;
     	try {
-    	state = "delete";
+    	state = "analyze";
+    	HashSet<Node> deleted = new HashSet<Node>();
+    	List<PendingUpdateAction> deletions = new ArrayList<PendingUpdateAction>();
         for (int i=0; i<list.size(); i++) {
             PendingUpdateAction action = list.get(i);
-            if (action instanceof DeleteAction) {
-                action.apply(context);
+            if (action instanceof DeleteAction && deleted.add(action.getTargetNode())) {
+                deletions.add(action);
             }
         }
-        state = "insert";
-        for (int i=0; i<list.size(); i++) {
-            PendingUpdateAction action = list.get(i);
-            if (action instanceof InsertAction) {
-                action.apply(context);
+        if (!deleted.isEmpty()) {
+            // a node within a deleted subtree does not need to be deleted separately
+            List<PendingUpdateAction> outermost = new ArrayList<PendingUpdateAction>(deletions.size());
+            for (int i=0; i<deletions.size(); i++) {
+                PendingUpdateAction action = deletions.get(i);
+                if (!isDeleted(action.getTargetNode().getParentNode(), deleted)) {
+                    outermost.add(action);
+                }
             }
+            deletions = outermost;
         }
-        state = "set-attribute";
+        List<PendingUpdateAction> insertions = new ArrayList<PendingUpdateAction>();
+        HashMap<Node, InsertAction> appends = new HashMap<Node, InsertAction>();
         for (int i=0; i<list.size(); i++) {
             PendingUpdateAction action = list.get(i);
-            if (action instanceof SetAttributeAction) {
-                action.apply(context);
+            if (action instanceof InsertAction || action instanceof PatchContentAction) {
+                Node target = action.getTargetNode();
+                if (isDeleted(target, deleted)) {
+                    continue;
+                }
+                if (action instanceof PatchContentAction) {
+                    // later insertions must follow the patched content
+                    appends.remove(target);
+                } else if (((InsertAction)action).getPosition() == InsertAction.LAST) {
+                    InsertAction previous = appends.get(target);
+                    if (previous != null) {
+                        previous.merge((InsertAction)action);
+                        continue;
+                    }
+                    appends.put(target, (InsertAction)action);
+                }
+                insertions.add(action);
             }
         }
-        state = "remove-attribute";
-        for (int i=0; i<list.size(); i++) {
+        // for each attribute, only the last action is applied; they are collected in reverse order
+        List<PendingUpdateAction> attributeChanges = new ArrayList<PendingUpdateAction>();
+        HashMap<Node, HashSet<String>> changedAttributes = new HashMap<Node, HashSet<String>>();
+        for (int i=list.size()-1; i>=0; i--) {
             PendingUpdateAction action = list.get(i);
-            if (action instanceof RemoveAttributeAction) {
-                action.apply(context);
+            String name;
+            if (action instanceof SetAttributeAction) {
+                name = ((SetAttributeAction)action).getAttributeName();
+            } else if (action instanceof RemoveAttributeAction) {
+                name = ((RemoveAttributeAction)action).getAttributeName();
+            } else {
+                continue;
+            }
+            Node target = action.getTargetNode();
+            HashSet<String> names = changedAttributes.get(target);
+            if (names == null) {
+                names = new HashSet<String>();
+                changedAttributes.put(target, names);
             }
+            if (names.add(name) && !isDeleted(target, deleted)) {
+                attributeChanges.add(action);
+            }
+        }
+
+    	state = "delete";
+        for (int i=0; i<deletions.size(); i++) {
+            deletions.get(i).apply(context);
+            applied++;
         }
+        state = "insert";
+        for (int i=0; i<insertions.size(); i++) {
+            insertions.get(i).apply(context);
+            applied++;
+        }
+        state = "attribute";
+        for (int i=attributeChanges.size()-1; i>=0; i--) {
+            attributeChanges.get(i).apply(context);
+            applied++;
+        }
+        actionCount += list.size();
+        appliedActionCount += applied;
+        logger.fine("Applied " + applied + " of " + list.size() + " pending update actions");
         // empty list in case of further scheduled actions
         list = new ArrayList<PendingUpdateAction>();
     	} catch(Exception e) {
     		logger.severe("Error on DOM write action: " + state + " " + e.getMessage());
     		throw new XPathException(e);
+    	} finally {
+    		HTMLDocumentWrapper.notifyMutation();
     	}
 
 
     }
 
+    /**
+     * Test whether a node is deleted, either directly or because one of its ancestors is deleted
+     * @param node the node to be tested (may be null)
+     * @param deleted the set of nodes that are deleted
+     * @return true if the node or one of its ancestors is in the set
+     */
+
+    private static boolean isDeleted(Node node, HashSet<Node> deleted) {
+        if (deleted.isEmpty()) {
+            return false;
+        }
+        for (Node n = node; n != null; n = n.getParentNode()) {
+            if (deleted.contains(n)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the total number of pending update actions that have been applied by this list
+     * @return the number of actions submitted
+     */
+
+    public int getActionCount() {
+        return actionCount;
+    }
+
+    /**
+     * Get the total number of actions actually applied, after redundant actions have been removed
+     * and insertions combined. This counts actions, not DOM operations: a single action, such as an
+     * ixsl:patch-content action, may make many changes to the page.
+     * @return the number of actions applied
+     */
+
+    public int getAppliedActionCount() {
+        return appliedActionCount;
+    }
 
 }
 
@@ -89,6 +89,15 @@ public class SetAttributeAction extends PendingUpdateAction {
         return targetNode;
     }
 
+    /**
+     * Get the name of the affected attribute or property
+     * @return the name in the form {uri}local-name
+     */
+
+    public String getAttributeName() {
+        return "{" + uri + "}" + localName;
+    }
+
 }
 
 // This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. 
@@ -106,6 +106,8 @@ public final class FastStringBuffer implements CharSequence {
             ((String)s).getChars(0, len, array, used);
         } else if (s instanceof FastStringBuffer) {
             ((FastStringBuffer)s).getChars(0, len, array, used);
+        } else if (s instanceof Rope) {
+            ((Rope)s).copyTo(array, used);
         } else {
             s.toString().getChars(0, len, array, used);
         }
@@ -0,0 +1,246 @@
+package client.net.sf.saxon.ce.tree.util;
+
+import client.net.sf.saxon.ce.Controller;
+import client.net.sf.saxon.ce.expr.XPathContext;
+import client.net.sf.saxon.ce.om.Axis;
+import client.net.sf.saxon.ce.om.NodeInfo;
+import client.net.sf.saxon.ce.pattern.NameTest;
+import client.net.sf.saxon.ce.pattern.NodeKindTest;
+import client.net.sf.saxon.ce.pattern.NodeTestPattern;
+import client.net.sf.saxon.ce.pattern.Pattern;
+import client.net.sf.saxon.ce.trans.XPathException;
+import client.net.sf.saxon.ce.tree.iter.AxisIterator;
+import client.net.sf.saxon.ce.tree.wrapper.VirtualNode;
+import client.net.sf.saxon.ce.type.Type;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * An index used to evaluate xsl:number for one combination of document, count pattern, and from
+ * pattern. The index is built in a single pass over the document in document order, after which the
+ * number of a node for level="any" or level="single" is found by a lookup, and for level="multiple"
+ * by a walk up the ancestor axis. Without the index, each xsl:number call searches the preceding
+ * axis or the preceding siblings, so numbering all the nodes in a document takes quadratic time.
+ *
+ * <p>The index is built only when the patterns do not contain variable references, and only
+ * after it has been used a number of times for the same document, so that a single xsl:number
+ * call does not pay the cost of indexing the whole document.</p>
+ */
+
+public final class NumberingIndex {
+
+    /**
+     * The number of calls for a given document and instruction before the index is built
+     */
+
+    private static final int THRESHOLD = 16;
+
+    /**
+     * The maximum number of indexes retained for one instruction
+     */
+
+    private static final int MAX_INDEXES = 8;
+
+    private Pattern count;
+    private Pattern from;
+    private int uses = 0;
+    private int treeVersion;
+
+    // For each indexed node (every element, and every other node that matches either pattern), an array
+    // holding the level="any" number, the level="single" number (zero if the node does not match the
+    // count pattern), and a flag (1) if the node matches the from pattern
+    private HashMap<Object, int[]> numbers = null;
+    private int anyCounter;
+
+    private NumberingIndex(Pattern count, Pattern from) {
+        this.count = count;
+        this.from = from;
+    }
+
+    /**
+     * Get the numbering index for a node
+     * @param inst the xsl:number instruction
+     * @param node the node to be numbered
+     * @param count the count pattern, or null if the default applies
+     * @param from the from pattern, or null if absent
+     * @param treeVersion a value that changes whenever the tree containing the node may have been
+     * modified, or a constant if the tree is immutable. An index built when the value was different
+     * is discarded.
+     * @param context the dynamic context
+     * @return the index, or null if no index is available for this node (in which case the caller
+     * must compute the number by searching the tree)
+     * @throws XPathException if an error occurs matching the patterns
+     */
+
+    public static NumberingIndex getIndex(Object inst, NodeInfo node, Pattern count, Pattern from,
+                                          int treeVersion, XPathContext context) throws XPathException {
+        int kind = node.getNodeKind();
+        if (kind == Type.ATTRIBUTE || kind == Type.NAMESPACE) {
+            return null;
+        }
+        String key = node.getDocumentNumber() + " ";
+        if (count == null) {
+            // the default count pattern depends on the node being numbered
+            key += kind + " " + node.getFingerprint();
+        }
+        Controller controller = context.getController();
+        HashMap<String, NumberingIndex> indexes =
+                (HashMap<String, NumberingIndex>)controller.getUserData(inst, "xsl:number-index");
+        if (indexes == null) {
+            indexes = new HashMap<String, NumberingIndex>();
+            controller.setUserData(inst, "xsl:number-index", indexes);
+        }
+        NumberingIndex index = indexes.get(key);
+        if (index == null) {
+            if (count == null) {
+                if (node.getFingerprint() == -1) {
+                    count = new NodeTestPattern(NodeKindTest.makeNodeKindTest(kind));
+                } else {
+                    count = new NodeTestPattern(new NameTest(node));
+                }
+            }
+            if (indexes.size() >= MAX_INDEXES) {
+                // typically the documents are temporary trees that are no longer in use
+                indexes.clear();
+            }
+            index = new NumberingIndex(count, from);
+            indexes.put(key, index);
+        }
+        if (index.numbers != null && index.treeVersion != treeVersion) {
+            // the tree may have changed since the index was built
+            index.numbers = null;
+            index.uses = 0;
+        }
+        if (index.numbers == null) {
+            if (++index.uses < THRESHOLD) {
+                return null;
+            }
+            index.treeVersion = treeVersion;
+            index.build(node.getRoot(), context);
+        }
+        return index;
+    }
+
+    private void build(NodeInfo root, XPathContext context) throws XPathException {
+        numbers = new HashMap<Object, int[]>(256);
+        anyCounter = 0;
+        visit(root, 0, context);
+    }
+
+    /**
+     * Index a node and its descendants
+     * @param node the node to be indexed
+     * @param siblings the number of preceding siblings of the node that match the count pattern
+     * @param context the dynamic context
+     * @return the number of preceding siblings, including this node, that match the count pattern
+     */
+
+    private int visit(NodeInfo node, int siblings, XPathContext context) throws XPathException {
+        int kind = node.getNodeKind();
+        boolean isFrom = from != null && from.matches(node, context);
+        if (isFrom) {
+            anyCounter = 0;
+        }
+        boolean isCounted = count.matches(node, context);
+        if (isCounted) {
+            anyCounter++;
+            siblings++;
+        }
+        boolean isParent = kind == Type.ELEMENT || kind == Type.DOCUMENT;
+        if (isParent || isCounted || isFrom) {
+            numbers.put(getKey(node), new int[]{anyCounter, (isCounted ? siblings : 0), (isFrom ? 1 : 0)});
+        }
+        if (isParent) {
+            int childSiblings = 0;
+            AxisIterator kids = node.iterateAxis(Axis.CHILD);
+            while (true) {
+                NodeInfo child = (NodeInfo)kids.next();
+                if (child == null) {
+                    break;
+                }
+                childSiblings = visit(child, childSiblings, context);
+            }
+        }
+        return siblings;
+    }
+
+    private static Object getKey(NodeInfo node) {
+        // wrappers are not unique, and computing their hash code is expensive, so use the underlying node
+        return (node instanceof VirtualNode ? ((VirtualNode)node).getRealNode() : node);
+    }
+
+    /**
+     * Get the number of a node for level="any"
+     * @param node the node to be numbered
+     * @return the number, or -1 if the node is not indexed
+     */
+
+    public int getNumberAny(NodeInfo node) {
+        int[] entry = numbers.get(getKey(node));
+        return (entry == null ? -1 : entry[0]);
+    }
+
+    /**
+     * Get the number of a node for level="single"
+     * @param node the node to be numbered
+     * @return the number, which is zero if there is no node to be counted, or -1 if the
+     * node is not indexed
+     */
+
+    public int getNumberSingle(NodeInfo node) {
+        // a node that is not indexed does not match either pattern (unless it is an attribute or
+        // namespace, which getIndex() excludes), so we move to its parent
+        int[] entry = numbers.get(getKey(node));
+        while (entry == null || entry[1] == 0) {
+            node = node.getParent();
+            if (node == null) {
+                return 0;
+            }
+            entry = numbers.get(getKey(node));
+            if (entry == null) {
+                return -1;
+            }
+            if (entry[2] != 0) {
+                return 0;
+            }
+        }
+        return entry[1];
+    }
+
+    /**
+     * Get the number of a node for level="multiple"
+     * @param node the node to be numbered
+     * @return a list containing, for each ancestor-or-self that matches the count pattern and that is
+     * below the nearest ancestor that matches the from pattern, the number of that node among its siblings;
+     * or null if the node is not indexed
+     */
+
+    public List getNumberMulti(NodeInfo node) {
+        ArrayList v = new ArrayList(5);
+        int[] entry = numbers.get(getKey(node));
+        while (true) {
+            if (entry != null && entry[1] != 0) {
+                v.add(0, new Long(entry[1]));
+            }
+            node = node.getParent();
+            if (node == null) {
+                break;
+            }
+            entry = numbers.get(getKey(node));
+            if (entry == null) {
+                return null;
+            }
+            if (entry[2] != 0) {
+                break;
+            }
+        }
+        return v;
+    }
+
+}
+
+// This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+// If a copy of the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+// This Source Code Form is “Incompatible With Secondary Licenses”, as defined by the Mozilla Public License, v. 2.0.
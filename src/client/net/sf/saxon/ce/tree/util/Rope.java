@@ -0,0 +1,153 @@
+package client.net.sf.saxon.ce.tree.util;
+
+import client.net.sf.saxon.ce.tree.linked.CharSlice;
+
+import java.util.ArrayList;
+
+/**
+ * A CharSequence representing the concatenation of two other CharSequences, either of which
+ * may itself be a Rope. Concatenation shares the existing segments rather than copying them, so a
+ * string built by repeated concatenation (typically an accumulator passed as a parameter to a
+ * recursive template or function) is constructed in linear rather than quadratic time. The
+ * characters are copied into a single String only when they are needed, and this is done once.
+ *
+ * <p>Like String, a Rope is immutable: the segments supplied must not be modified after the
+ * Rope is created.</p>
+ */
+
+public final class Rope implements CharSequence {
+
+    /**
+     * Concatenations whose total length is below this threshold are done by copying
+     */
+
+    private static final int MIN_LENGTH = 256;
+
+    private CharSequence left;      // null once the rope has been flattened
+    private CharSequence right;     // null once the rope has been flattened
+    private String flat;            // null until the rope has been flattened
+    private final int length;
+
+    private Rope(CharSequence left, CharSequence right) {
+        this.left = left;
+        this.right = right;
+        this.length = left.length() + right.length();
+    }
+
+    /**
+     * Concatenate two CharSequences
+     * @param a the first CharSequence, which must be immutable
+     * @param b the second CharSequence, which must be immutable
+     * @return a CharSequence representing the concatenation of a and b. This will be a Rope
+     * if the result is long enough to make sharing the segments worthwhile.
+     */
+
+    public static CharSequence concat(CharSequence a, CharSequence b) {
+        int lenA = a.length();
+        if (lenA == 0) {
+            return b;
+        }
+        int lenB = b.length();
+        if (lenB == 0) {
+            return a;
+        }
+        if (lenA + lenB < MIN_LENGTH) {
+            return a.toString() + b.toString();
+        }
+        return new Rope(a, b);
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public char charAt(int index) {
+        return flatten().charAt(index);
+    }
+
+    public CharSequence subSequence(int start, int end) {
+        return flatten().substring(start, end);
+    }
+
+    public String toString() {
+        return flatten();
+    }
+
+    /**
+     * Compare equality with another CharSequence, based on the characters
+     */
+
+    public boolean equals(Object other) {
+        return other instanceof CharSequence && flatten().equals(other.toString());
+    }
+
+    /**
+     * Get a hash code, which is the same as the hash code of the equivalent String
+     */
+
+    public int hashCode() {
+        return flatten().hashCode();
+    }
+
+    /**
+     * Copy the characters of this Rope into an array
+     * @param destination the array to which the characters are to be copied. This must
+     * have room for all the characters of the Rope starting at the given offset
+     * @param offset the position in the destination array at which the first character is written
+     */
+
+    public void copyTo(char[] destination, int offset) {
+        if (flat != null) {
+            flat.getChars(0, length, destination, offset);
+            return;
+        }
+        // Ropes are typically deep and unbalanced, so walk the tree without recursion
+        ArrayList<CharSequence> stack = new ArrayList<CharSequence>();
+        stack.add(this);
+        int pos = offset;
+        while (!stack.isEmpty()) {
+            CharSequence cs = stack.remove(stack.size() - 1);
+            if (cs instanceof Rope) {
+                Rope r = (Rope)cs;
+                if (r.flat == null) {
+                    stack.add(r.right);
+                    stack.add(r.left);
+                    continue;
+                }
+                cs = r.flat;
+            }
+            int len = cs.length();
+            if (cs instanceof String) {
+                ((String)cs).getChars(0, len, destination, pos);
+            } else if (cs instanceof FastStringBuffer) {
+                ((FastStringBuffer)cs).getChars(0, len, destination, pos);
+            } else if (cs instanceof CharSlice) {
+                ((CharSlice)cs).copyTo(destination, pos);
+            } else {
+                cs.toString().getChars(0, len, destination, pos);
+            }
+            pos += len;
+        }
+    }
+
+    /**
+     * Convert the Rope to a single String, releasing the segments
+     * @return the contents as a String
+     */
+
+    private String flatten() {
+        if (flat == null) {
+            char[] buffer = new char[length];
+            copyTo(buffer, 0);
+            flat = new String(buffer);
+            left = null;
+            right = null;
+        }
+        return flat;
+    }
+
+}
+
+// This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+// If a copy of the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+// This Source Code Form is “Incompatible With Secondary Licenses”, as defined by the Mozilla Public License, v. 2.0.
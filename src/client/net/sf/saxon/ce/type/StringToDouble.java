@@ -7,6 +7,22 @@ import client.net.sf.saxon.ce.value.Whitespace;
  */
 public abstract class StringToDouble {
 
+    /**
+     * Powers of ten that are exactly representable as doubles
+     */
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * The maximum number of significant digits handled by {@link #parseSimpleNumber}. Any integer with this
+     * many digits is exactly representable as a double.
+     */
+
+    private static final int MAX_SIMPLE_DIGITS = 15;
+
     /**
      * Convert a string to a double.
      * @param s the String to be converted
@@ -16,6 +32,10 @@ public abstract class StringToDouble {
 
     public static double stringToNumber(CharSequence s) throws NumberFormatException {
         // first try to parse simple numbers by hand (it's cheaper)
+        double d = parseSimpleNumber(s);
+        if (!Double.isNaN(d)) {
+            return d;
+        }
         boolean containsDisallowedChars = false;
         boolean containsWhitespace = false;
         for (int i=0; i<s.length(); i++) {
@@ -57,6 +77,96 @@ public abstract class StringToDouble {
         }
     }
 
+    /**
+     * Parse a number written in the common form [+|-]digits[.digits][(e|E)[+|-]digits], with at most
+     * {@link #MAX_SIMPLE_DIGITS} significant digits and a small decimal exponent. In this case the significand
+     * and the power of ten are both exactly representable as doubles, so a single multiplication or division
+     * gives the correctly rounded result. The arithmetic is done in doubles rather than longs, which are
+     * slow in JavaScript.
+     * @param s the string to be parsed
+     * @return the value of the number, or NaN if the string is not in the required form, in which case the
+     * caller must use the general conversion (which will report an error if the string is not a valid number)
+     */
+
+    private static double parseSimpleNumber(CharSequence s) {
+        int i = 0;
+        int len = s.length();
+        while (i < len && Whitespace.isWhitespace(s.charAt(i))) {
+            i++;
+        }
+        while (len > i && Whitespace.isWhitespace(s.charAt(len - 1))) {
+            len--;
+        }
+        boolean negative = false;
+        if (i < len && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            negative = (s.charAt(i) == '-');
+            i++;
+        }
+        double significand = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean sawDigit = false;
+        boolean sawPoint = false;
+        for (; i < len; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                sawDigit = true;
+                if (digits == 0 && c == '0') {
+                    // leading zero
+                } else if (digits == MAX_SIMPLE_DIGITS) {
+                    return Double.NaN;
+                } else {
+                    significand = significand * 10 + (c - '0');
+                    digits++;
+                }
+                if (sawPoint) {
+                    exponent--;
+                }
+            } else if (c == '.' && !sawPoint) {
+                sawPoint = true;
+            } else if (c == 'e' || c == 'E') {
+                break;
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (!sawDigit) {
+            return Double.NaN;
+        }
+        if (i < len) {
+            // read the exponent
+            i++;
+            boolean negativeExponent = false;
+            if (i < len && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+                negativeExponent = (s.charAt(i) == '-');
+                i++;
+            }
+            if (i == len) {
+                return Double.NaN;
+            }
+            int exp = 0;
+            for (; i < len; i++) {
+                char c = s.charAt(i);
+                if (c < '0' || c > '9' || exp > 1000) {
+                    return Double.NaN;
+                }
+                exp = exp * 10 + (c - '0');
+            }
+            exponent += (negativeExponent ? -exp : exp);
+        }
+        double result;
+        if (significand == 0) {
+            result = 0;
+        } else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+            result = significand * POWERS_OF_TEN[exponent];
+        } else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+            result = significand / POWERS_OF_TEN[-exponent];
+        } else {
+            return Double.NaN;
+        }
+        return (negative ? -result : result);
+    }
+
 }
 
 // This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0. 
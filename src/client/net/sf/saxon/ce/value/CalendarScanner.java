@@ -0,0 +1,221 @@
+package client.net.sf.saxon.ce.value;
+
+/**
+ * A scanner used to parse the lexical forms of the date, time, and duration types in a single pass
+ * over the supplied characters. The components are returned as integers, so no substrings or match
+ * results are allocated. Leading and trailing whitespace is ignored, as the types all use the
+ * whitespace facet "collapse".
+ *
+ * <p>Each read method returns a negative value (or false) if the characters at the current position
+ * do not have the required form. The caller is expected to abandon the parse at that point, so the
+ * position after a failure is undefined.</p>
+ */
+
+final class CalendarScanner {
+
+    /**
+     * Value returned by {@link #readYear} if the characters do not form a valid year
+     */
+
+    public static final int BAD_YEAR = Integer.MIN_VALUE;
+
+    private CharSequence in;
+    private int pos;
+    private int end;
+
+    /**
+     * Create a scanner positioned at the first non-whitespace character of the input
+     * @param in the lexical form to be parsed
+     */
+
+    public CalendarScanner(CharSequence in) {
+        this.in = in;
+        pos = 0;
+        end = in.length();
+        while (pos < end && Whitespace.isWhitespace(in.charAt(pos))) {
+            pos++;
+        }
+        while (end > pos && Whitespace.isWhitespace(in.charAt(end - 1))) {
+            end--;
+        }
+    }
+
+    /**
+     * Test whether all the significant characters have been read
+     * @return true if the scanner is positioned after the last non-whitespace character
+     */
+
+    public boolean atEnd() {
+        return pos >= end;
+    }
+
+    /**
+     * Get the character at the current position, without advancing
+     * @return the next character, or 0 if there are no more characters
+     */
+
+    public char peek() {
+        return (pos < end ? in.charAt(pos) : 0);
+    }
+
+    /**
+     * Read a given character if it is the next character
+     * @param c the required character
+     * @return true if the next character was c, in which case the scanner is advanced past it
+     */
+
+    public boolean skip(char c) {
+        if (pos < end && in.charAt(pos) == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Read a fixed number of decimal digits
+     * @param n the number of digits to read
+     * @return the value of the digits, or -1 if the next n characters are not all digits
+     */
+
+    public int readDigits(int n) {
+        if (pos + n > end) {
+            return -1;
+        }
+        int result = 0;
+        for (int i = 0; i < n; i++) {
+            char c = in.charAt(pos++);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    /**
+     * Read a non-empty sequence of decimal digits
+     * @return the value of the digits, or -1 if there are no digits or the value exceeds 2^31
+     */
+
+    public int readUnsignedInt() {
+        int start = pos;
+        long result = 0;
+        while (pos < end) {
+            char c = in.charAt(pos);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            result = result * 10 + (c - '0');
+            if (result > Integer.MAX_VALUE) {
+                return -1;
+            }
+            pos++;
+        }
+        return (pos == start ? -1 : (int)result);
+    }
+
+    /**
+     * Get the current position
+     * @return the offset of the next character to be read
+     */
+
+    public int getPosition() {
+        return pos;
+    }
+
+    /**
+     * Read a year in the form defined by XML Schema: an optional minus sign followed by at least four
+     * digits, with no leading zero if there are more than four
+     * @return the year as written (so the year before 1 is -1), or {@link #BAD_YEAR} if the characters do not
+     * form a valid year. Year zero is returned as zero, and it is the caller's responsibility to reject it.
+     */
+
+    public int readYear() {
+        boolean negative = skip('-');
+        int start = pos;
+        int year = readUnsignedInt();
+        int length = pos - start;
+        if (year < 0 || length < 4 || (length > 4 && in.charAt(start) == '0')) {
+            return BAD_YEAR;
+        }
+        return (negative ? -year : year);
+    }
+
+    /**
+     * Read an optional fractional part of the seconds value: a decimal point followed by one or more digits.
+     * Digits beyond the sixth are used only for rounding.
+     * @return the number of microseconds (zero if there is no fractional part), or -1 if there is a decimal point
+     * that is not followed by a digit
+     */
+
+    public int readMicroseconds() {
+        if (!skip('.')) {
+            return 0;
+        }
+        int start = pos;
+        int micros = 0;
+        int scale = 100000;
+        boolean roundUp = false;
+        while (pos < end) {
+            char c = in.charAt(pos);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            if (scale > 0) {
+                micros += (c - '0') * scale;
+                scale /= 10;
+            } else if (pos - start == 6) {
+                roundUp = c >= '5';
+            }
+            pos++;
+        }
+        if (pos == start) {
+            return -1;
+        }
+        if (roundUp && micros < 999999) {
+            micros++;
+        }
+        return micros;
+    }
+
+    /**
+     * Read an optional timezone, which must be the last thing in the input
+     * @return the timezone offset in minutes; {@link CalendarValue#NO_TIMEZONE} if there is no timezone;
+     * or {@link CalendarValue#BAD_TIMEZONE} if the remaining characters are not a valid timezone
+     */
+
+    public int readTimezone() {
+        if (atEnd()) {
+            return CalendarValue.NO_TIMEZONE;
+        }
+        int tz;
+        if (skip('Z')) {
+            tz = 0;
+        } else {
+            char sign = peek();
+            if (sign != '+' && sign != '-') {
+                return CalendarValue.BAD_TIMEZONE;
+            }
+            pos++;
+            int h = readDigits(2);
+            if (h < 0 || !skip(':')) {
+                return CalendarValue.BAD_TIMEZONE;
+            }
+            int m = readDigits(2);
+            if (m < 0 || m > 59 || h > 14 || (h == 14 && m > 0)) {
+                return CalendarValue.BAD_TIMEZONE;
+            }
+            tz = h * 60 + m;
+            if (sign == '-') {
+                tz = -tz;
+            }
+        }
+        return (atEnd() ? tz : CalendarValue.BAD_TIMEZONE);
+    }
+
+}
+
+// This Source Code Form is subject to the terms of the Mozilla Public License, v. 2.0.
+// If a copy of the MPL was not distributed with this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+// This Source Code Form is “Incompatible With Secondary Licenses”, as defined by the Mozilla Public License, v. 2.0.
@@ -6,8 +6,6 @@ import client.net.sf.saxon.ce.lib.StringCollator;
 import client.net.sf.saxon.ce.trans.NoDynamicContextException;
 import client.net.sf.saxon.ce.trans.XPathException;
 import client.net.sf.saxon.ce.tree.util.FastStringBuffer;
-import com.google.gwt.regexp.shared.MatchResult;
-import com.google.gwt.regexp.shared.RegExp;
 
 import java.math.BigDecimal;
 
@@ -63,30 +61,18 @@ public abstract class CalendarValue extends client.net.sf.saxon.ce.value.AtomicV
         return tzMinutes;
     }
 
-    private static RegExp timezonePattern =
-            RegExp.compile("[-+]([0-9][0-9]):([0-9][0-9])");
+    /**
+     * Parse the lexical form of a timezone
+     * @param zone the timezone, in the form Z or [+-]hh:mm; or null or empty to indicate no timezone
+     * @return the timezone offset in minutes; {@link #NO_TIMEZONE} if the supplied value is null or empty;
+     * or {@link #BAD_TIMEZONE} if it is invalid
+     */
 
     public static int parseTimezone(String zone) {
-        if (zone==null || zone.isEmpty()) {
+        if (zone == null) {
             return NO_TIMEZONE;
-        } else if (zone.equals("Z")) {
-            return 0;
-        } else {
-            MatchResult match = timezonePattern.exec(zone);
-            if (match == null) {
-                return BAD_TIMEZONE;
-            }
-            int h = DurationValue.simpleInteger(match.getGroup(1));
-            int m = DurationValue.simpleInteger(match.getGroup(2));
-            if (h > 14 || (h == 14 && m > 0)) {
-                return BAD_TIMEZONE;
-            }
-            int tz = h*60 + m;
-            if (zone.charAt(0) == '-') {
-                tz = -tz;
-            }
-            return tz;
         }
+        return new CalendarScanner(zone).readTimezone();
     }
 
     /**
@@ -142,6 +142,13 @@ public class Closure extends Value {
 
                 savedXPathContext.setStackFrame(stackFrameMap, savedStackFrame);
             }
+        } else if (context.getStackFrame().isPooled()) {
+            // The expression may still bind variables of its own (for example in a "for" expression),
+            // which are held in the same stack frame. A pooled frame will be reused by another template
+            // or function once the current one has finished, so the closure must not share it.
+            SlotManager stackFrameMap = context.getStackFrame().getStackFrameMap();
+            savedXPathContext.setStackFrame(stackFrameMap,
+                    new ValueRepresentation[stackFrameMap.getNumberOfVariables()]);
         }
 
         // Make a copy of the context item
@@ -12,8 +12,6 @@ import client.net.sf.saxon.ce.tree.util.FastStringBuffer;
 import client.net.sf.saxon.ce.type.BuiltInAtomicType;
 import client.net.sf.saxon.ce.type.ConversionResult;
 import client.net.sf.saxon.ce.type.ValidationFailure;
-import com.google.gwt.regexp.shared.MatchResult;
-import com.google.gwt.regexp.shared.RegExp;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
@@ -117,40 +115,41 @@ public final class DateTimeValue extends CalendarValue implements Comparable {
         return v;
     }
 
-    private static RegExp dateTimePattern =
-            RegExp.compile("\\-?([0-9][0-9][0-9][0-9])-([0-9][0-9])-([0-9][0-9])T([0-9][0-9]):([0-9][0-9]):([0-9][0-9])(\\.[0-9]*)?([-+Z].*)?");
+    /**
+     * Static factory method: create a dateTime value from a supplied string, in
+     * ISO 8601 format
+     *
+     * @param s the dateTime in the lexical format [-]yyyy-mm-ddThh:mm:ss[.fff*] followed optionally by
+     *          timezone in the form [+-]hh:mm or Z
+     * @return either a DateTimeValue, or a ValidationFailure if the supplied value was invalid
+     */
 
     public static ConversionResult makeDateTimeValue(CharSequence s) {
-        String str = s.toString();
-        MatchResult match = dateTimePattern.exec(str);
-        if (match == null) {
-            return badDate("wrong format", str);
-        }
+        CalendarScanner in = new CalendarScanner(s);
         DateTimeValue dt = new DateTimeValue();
-        dt.year = DurationValue.simpleInteger(match.getGroup(1));
-        if (str.startsWith("-")) {
-        	dt.year = dt.year - 1; // no year zero in lexical space for XSD 1.0 - so -1 becomes 0 and -2 becomes -1 etc.
-            dt.year = -dt.year;
-        }
-        dt.month = DurationValue.simpleInteger(match.getGroup(2));
-        dt.day = DurationValue.simpleInteger(match.getGroup(3));
-        dt.hour = DurationValue.simpleInteger(match.getGroup(4));
-        dt.minute = DurationValue.simpleInteger(match.getGroup(5));
-        dt.second = DurationValue.simpleInteger(match.getGroup(6));
-        String frac = match.getGroup(7);
-        if (frac != null && frac.length() > 0) {
-            double fractionalSeconds = Double.parseDouble(frac);
-            dt.microsecond = (int)(Math.round(fractionalSeconds * 1000000));
-        }
-        String tz = match.getGroup(8);
-        int tzmin = parseTimezone(tz);
+        int year = in.readYear();
+        if (year == CalendarScanner.BAD_YEAR || !in.skip('-') ||
+                (dt.month = in.readDigits(2)) < 0 || !in.skip('-') ||
+                (dt.day = in.readDigits(2)) < 0 || !in.skip('T') ||
+                (dt.hour = in.readDigits(2)) < 0 || !in.skip(':') ||
+                (dt.minute = in.readDigits(2)) < 0 || !in.skip(':') ||
+                (dt.second = in.readDigits(2)) < 0 ||
+                (dt.microsecond = in.readMicroseconds()) < 0) {
+            return badDate("wrong format", s);
+        }
+        if (dt.hour > 24 || dt.minute > 59 || dt.second > 59) {
+            return badDate("time component out of range", s);
+        }
+        int tzmin = in.readTimezone();
         if (tzmin == BAD_TIMEZONE) {
-            return badDate("Invalid timezone", str);
+            return badDate("Invalid timezone", s);
         }
         dt.setTimezoneInMinutes(tzmin);
-        if (dt.year == 0) {
-            return badDate("year zero", str);
+        if (year == 0) {
+            return badDate("year zero", s);
         }
+        // no year zero in lexical space for XSD 1.0 - so -1 becomes 0 and -2 becomes -1 etc.
+        dt.year = (year < 0 ? year + 1 : year);
         // Check that this is a valid calendar date
         if (!DateValue.isValidDate(dt.year, dt.month, dt.day)) {
             return badDate("Non-existent date", s);
@@ -158,7 +157,7 @@ public final class DateTimeValue extends CalendarValue implements Comparable {
         // Adjust midnight to 00:00 on the following day
         if (dt.hour == 24) {
             if (dt.minute != 0 || dt.second != 0 || dt.microsecond != 0) {
-                return badDate("after midnight", str);
+                return badDate("after midnight", s);
             } else {
                 dt.hour = 0;
                 DateValue tomorrow = DateValue.tomorrow(dt.year, dt.month, dt.day);
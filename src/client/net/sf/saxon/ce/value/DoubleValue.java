@@ -172,6 +172,10 @@ public final class DoubleValue extends NumericValue {
         }
         if (isWholeNumber()) {
             // TODO: negative zero
+            if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                // avoid long arithmetic, which is emulated (and slow) in JavaScript
+                return Integer.toString((int)value);
+            }
             return ""+(long)value;
         } else {
             double a = Math.abs(value);
@@ -6,7 +6,6 @@ import client.net.sf.saxon.ce.lib.StringCollator;
 import client.net.sf.saxon.ce.om.StandardNames;
 import client.net.sf.saxon.ce.trans.XPathException;
 import client.net.sf.saxon.ce.tree.util.FastStringBuffer;
-import client.net.sf.saxon.ce.tree.util.StringTokenizer;
 import client.net.sf.saxon.ce.type.AtomicType;
 import client.net.sf.saxon.ce.type.BuiltInAtomicType;
 import client.net.sf.saxon.ce.type.ConversionResult;
@@ -127,43 +126,57 @@ public class DurationValue extends AtomicValue {
     protected static ConversionResult makeDuration(CharSequence s, boolean allowYM, boolean allowDT) {
         int years = 0, months = 0, days = 0, hours = 0, minutes = 0, seconds = 0, microseconds = 0;
         boolean negative = false;
-        StringTokenizer tok = new StringTokenizer(Whitespace.trimWhitespace(s).toString(), "-+.PYMDTHS", true);
+        CalendarScanner in = new CalendarScanner(s);
         int components = 0;
-        if (!tok.hasMoreElements()) {
+        if (in.atEnd()) {
             return badDuration("empty string", s);
         }
-        String part = (String)tok.nextElement();
-        if ("+".equals(part)) {
+        if (in.skip('+')) {
             return badDuration("+ sign not allowed in a duration", s);
-        } else if ("-".equals(part)) {
-            negative = true;
-            part = (String)tok.nextElement();
         }
-        if (!"P".equals(part)) {
+        negative = in.skip('-');
+        if (!in.skip('P')) {
             return badDuration("missing 'P'", s);
         }
         int state = 0;
-        while (tok.hasMoreElements()) {
-            part = (String)tok.nextElement();
-            if ("T".equals(part)) {
+        while (!in.atEnd()) {
+            if (in.skip('T')) {
+                if (state >= 4) {
+                    return badDuration("misplaced T", s);
+                }
                 state = 4;
-                if (!tok.hasMoreElements()) {
+                if (in.atEnd()) {
                     return badDuration("T must be followed by time components", s);
                 }
-                part = (String)tok.nextElement();
             }
-            int value = simpleInteger(part);
+            int start = in.getPosition();
+            int value = in.readUnsignedInt();
             if (value < 0) {
-                if (part.length() > 8) {
+                if (in.getPosition() > start) {
                     return badDuration("component invalid or too large", s);
                 } else {
                     return badDuration("non-numeric component", s);
                 }
             }
-            if (!tok.hasMoreElements()) {
+            if (in.atEnd()) {
                 return badDuration("missing unit letter at end", s);
             }
-            char delim = ((String)tok.nextElement()).charAt(0);
+            char delim = in.peek();
+            if (delim == '.') {
+                if (state < 4 || state > 6) {
+                    return badDuration("misplaced decimal point", s);
+                }
+                microseconds = in.readMicroseconds();
+                if (microseconds < 0) {
+                    return badDuration("non-numeric fractional seconds", s);
+                }
+                if (in.atEnd()) {
+                    return badDuration("missing unit letter at end", s);
+                }
+                state = 7;
+                delim = in.peek();
+            }
+            in.skip(delim);
             switch (delim) {
             case'Y':
                 if (state > 0) {
@@ -218,13 +231,6 @@ public class DurationValue extends AtomicValue {
                 state = 5;
                 components++;
                 break;
-            case'.':
-                if (state < 4 || state > 6) {
-                    return badDuration("misplaced decimal point", s);
-                }
-                seconds = value;
-                state = 7;
-                break;
             case'S':
                 if (state < 4 || state > 7) {
                     return badDuration("S is out of sequence", s);
@@ -232,21 +238,7 @@ public class DurationValue extends AtomicValue {
                 if (!allowDT) {
                     return badDuration("Seconds component is not allowed in yearMonthDuration", s);
                 }
-                if (state == 7) {
-                    while (part.length() < 6) {
-                        part += "0";
-                    }
-                    if (part.length() > 6) {
-                        part = part.substring(0, 6);
-                    }
-                    value = simpleInteger(part);
-                    if (value < 0) {
-                        return badDuration("non-numeric fractional seconds", s);
-                    }
-                    microseconds = value;
-                } else {
-                    seconds = value;
-                }
+                seconds = value;
                 state = 8;
                 components++;
                 break;
@@ -275,36 +267,6 @@ public class DurationValue extends AtomicValue {
         return err;
     }
 
-    /**
-     * Parse a simple unsigned integer
-     *
-     * @param s the string containing the sequence of digits. No sign or whitespace is allowed.
-     * @return the integer. Return -1 if the string is not a sequence of digits or exceeds 2^31
-     */
-
-    protected static int simpleInteger(String s) {
-        long result = 0;
-        if (s == null) {
-            return -1;
-        }
-        int len = s.length();
-        if (len == 0) {
-            return -1;
-        }
-        for (int i = 0; i < len; i++) {
-            char c = s.charAt(i);
-            if (c >= '0' && c <= '9') {
-                result = result * 10 + (c - '0');
-                if (result > Integer.MAX_VALUE) {
-                    return -1;
-                }
-            } else {
-                return -1;
-            }
-        }
-        return (int)result;
-    }
-
     /**
      * Determine the primitive type of the value. This delivers the same answer as
      * getItemType().getPrimitiveItemType(). The primitive types are
@@ -160,6 +160,10 @@ public final class FloatValue extends NumericValue {
         }
         if (isWholeNumber()) {
             // TODO: negative zero
+            if (value > -1e9f && value < 1e9f) {
+                // avoid long arithmetic, which is emulated (and slow) in JavaScript
+                return Integer.toString((int)value);
+            }
             return ""+(long)value;
         } else {
             double a = Math.abs(value);
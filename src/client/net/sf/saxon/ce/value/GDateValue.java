@@ -9,8 +9,6 @@ import client.net.sf.saxon.ce.trans.NoDynamicContextException;
 import client.net.sf.saxon.ce.trans.XPathException;
 import client.net.sf.saxon.ce.type.ConversionResult;
 import client.net.sf.saxon.ce.type.ValidationFailure;
-import com.google.gwt.regexp.shared.MatchResult;
-import com.google.gwt.regexp.shared.RegExp;
 
 
 /**
@@ -55,31 +53,56 @@ public abstract class GDateValue extends CalendarValue {
         return day;
     }
 
-    private static RegExp datePattern =
-            RegExp.compile("\\-?([0-9]+)-([0-9][0-9])-([0-9][0-9])([-+Z].*)?");
+    /**
+     * Set the value of a date from its lexical form, in the format [-]yyyy-mm-dd followed by
+     * an optional timezone
+     * @param dt the date object whose fields are to be set
+     * @param s the lexical form
+     * @return the supplied date object, or a ValidationFailure if the lexical form is invalid
+     */
 
     protected static ConversionResult setLexicalValue(GDateValue dt, CharSequence s) {
-        String str = s.toString();
-        MatchResult match = datePattern.exec(str);
-        if (match == null) {
-            return badDate("wrong format", str);
+        CalendarScanner in = new CalendarScanner(s);
+        int year = in.readYear();
+        if (year == CalendarScanner.BAD_YEAR || !in.skip('-')) {
+            return badDate("wrong format", s);
         }
-        dt.year = DurationValue.simpleInteger(match.getGroup(1));
-        if (str.startsWith("-")) {
-        	dt.year = dt.year - 1; // no year zero in lexical space for XSD 1.0 - so -1 becomes 0 and -2 becomes -1 etc.
-            dt.year = -dt.year; 
+        int month = in.readDigits(2);
+        if (month < 0 || !in.skip('-')) {
+            return badDate("wrong format", s);
         }
-        dt.month = DurationValue.simpleInteger(match.getGroup(2));
-        dt.day = DurationValue.simpleInteger(match.getGroup(3));
-        String tz = match.getGroup(4);
-        int tzmin = parseTimezone(tz);
+        int day = in.readDigits(2);
+        if (day < 0) {
+            return badDate("wrong format", s);
+        }
+        return setComponents(dt, year, month, day, in, s);
+    }
+
+    /**
+     * Set the fields of a date, after reading the date components from its lexical form
+     * @param dt the date object whose fields are to be set
+     * @param year the year as written in the lexical form (so the year before 1 is -1)
+     * @param month the month, which is not yet validated
+     * @param day the day, which is not yet validated
+     * @param in the scanner, positioned at the optional timezone
+     * @param s the complete lexical form, for use in error messages
+     * @return the supplied date object, or a ValidationFailure if the value is invalid
+     */
+
+    static ConversionResult setComponents(GDateValue dt, int year, int month, int day,
+                                          CalendarScanner in, CharSequence s) {
+        int tzmin = in.readTimezone();
         if (tzmin == BAD_TIMEZONE) {
-            return badDate("invalid timezone", str);
+            return badDate("invalid timezone", s);
         }
         dt.setTimezoneInMinutes(tzmin);
-        if (dt.year == 0) {
-            return badDate("year zero", str);
+        if (year == 0) {
+            return badDate("year zero", s);
         }
+        // no year zero in lexical space for XSD 1.0 - so -1 becomes 0 and -2 becomes -1 etc.
+        dt.year = (year < 0 ? year + 1 : year);
+        dt.month = month;
+        dt.day = day;
         // Check that this is a valid calendar date
         if (!DateValue.isValidDate(dt.year, dt.month, dt.day)) {
             return badDate("non-existent date", s);
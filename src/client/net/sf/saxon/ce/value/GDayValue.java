@@ -6,8 +6,6 @@ import client.net.sf.saxon.ce.trans.XPathException;
 import client.net.sf.saxon.ce.type.*;
 
 
-import com.google.gwt.regexp.shared.MatchResult;
-import com.google.gwt.regexp.shared.RegExp;
 
 /**
  * Implementation of the xs:gDay data type
@@ -15,22 +13,17 @@ import com.google.gwt.regexp.shared.RegExp;
 
 public class GDayValue extends GDateValue {
 
-    private static RegExp regex =
-            RegExp.compile("---([0-9][0-9])(Z|[+-][0-9][0-9]:[0-9][0-9])?");
-
     private GDayValue(){}
 
     public static ConversionResult makeGDayValue(CharSequence value) {
-        MatchResult m = regex.exec(Whitespace.trimWhitespace(value).toString());
-        if (m == null) {
+        CalendarScanner in = new CalendarScanner(value);
+        int day = (in.skip('-') && in.skip('-') && in.skip('-') ? in.readDigits(2) : -1);
+        if (day < 0) {
             return new ValidationFailure("Cannot convert '" + value + "' to a gDay");
         }
         GDayValue g = new GDayValue();
-        String base = m.getGroup(1);
-        String tz = m.getGroup(2);
-        String date = "2000-01-" + (base==null ? "" : base) + (tz==null ? "" : tz);
         g.typeLabel = BuiltInAtomicType.G_DAY;
-        return setLexicalValue(g, date);
+        return setComponents(g, 2000, 1, day, in, value);
     }
 
     public GDayValue(int day, int tz) {
@@ -5,8 +5,6 @@ import client.net.sf.saxon.ce.om.StandardNames;
 import client.net.sf.saxon.ce.trans.XPathException;
 import client.net.sf.saxon.ce.type.*;
 
-import com.google.gwt.regexp.shared.MatchResult;
-import com.google.gwt.regexp.shared.RegExp;
 
 
 /**
@@ -15,22 +13,18 @@ import com.google.gwt.regexp.shared.RegExp;
 
 public class GMonthDayValue extends GDateValue {
 
-    private static RegExp regex =
-            RegExp.compile("--([0-9][0-9]-[0-9][0-9])(Z|[+-][0-9][0-9]:[0-9][0-9])?");
-
     private GMonthDayValue(){}
 
     public static ConversionResult makeGMonthDayValue(CharSequence value) {
-        MatchResult m = regex.exec(Whitespace.trimWhitespace(value).toString());
-        if (m == null) {
+        CalendarScanner in = new CalendarScanner(value);
+        int month = (in.skip('-') && in.skip('-') ? in.readDigits(2) : -1);
+        int day = (month < 0 || !in.skip('-') ? -1 : in.readDigits(2));
+        if (day < 0) {
             return new ValidationFailure("Cannot convert '" + value + "' to a gMonthDay");
         }
         GMonthDayValue g = new GMonthDayValue();
-        String base = m.getGroup(1);
-        String tz = m.getGroup(2);
-        String date = "2000-" + (base==null ? "" : base) + (tz==null ? "" : tz);
         g.typeLabel = BuiltInAtomicType.G_MONTH_DAY;
-        return setLexicalValue(g, date);
+        return setComponents(g, 2000, month, day, in, value);
     }
 
     public GMonthDayValue(int month, int day, int tz) {
@@ -4,8 +4,6 @@ import client.net.sf.saxon.ce.tree.util.FastStringBuffer;
 import client.net.sf.saxon.ce.om.StandardNames;
 import client.net.sf.saxon.ce.trans.XPathException;
 import client.net.sf.saxon.ce.type.*;
-import com.google.gwt.regexp.shared.MatchResult;
-import com.google.gwt.regexp.shared.RegExp;
 
 
 /**
@@ -14,24 +12,18 @@ import com.google.gwt.regexp.shared.RegExp;
 
 public class GMonthValue extends GDateValue {
 
-    private static RegExp regex =
-            //Pattern.compile("--([0-9][0-9])(--)?(Z|[+-][0-9][0-9]:[0-9][0-9])?");
-            RegExp.compile("--([0-9][0-9])(Z|[+-][0-9][0-9]:[0-9][0-9])?");
-            // The commented-out pattern tolerates the bogus format --MM-- which was wrongly permitted by the original schema spec
-
     private GMonthValue(){}
 
     public static ConversionResult makeGMonthValue(CharSequence value) {
-        GMonthValue g = new GMonthValue();
-        MatchResult m = regex.exec(Whitespace.trimWhitespace(value).toString());
-        if (m == null) {
+        // Note, the bogus format --MM-- which was wrongly permitted by the original schema spec is not accepted
+        CalendarScanner in = new CalendarScanner(value);
+        int month = (in.skip('-') && in.skip('-') ? in.readDigits(2) : -1);
+        if (month < 0) {
             return new ValidationFailure("Cannot convert '" + value + "' to a gMonth");
         }
-        String base = m.getGroup(1);
-        String tz = m.getGroup(2);
-        String date = "2000-" + (base==null ? "" : base) + "-01" + (tz==null ? "" : tz);
+        GMonthValue g = new GMonthValue();
         g.typeLabel = BuiltInAtomicType.G_MONTH;
-        return setLexicalValue(g, date);
+        return setComponents(g, 2000, month, 1, in, value);
     }
 
     public GMonthValue(int month, int tz) {
@@ -8,8 +8,6 @@ import client.net.sf.saxon.ce.type.BuiltInAtomicType;
 import client.net.sf.saxon.ce.type.ConversionResult;
 import client.net.sf.saxon.ce.type.ValidationFailure;
 
-import com.google.gwt.regexp.shared.MatchResult;
-import com.google.gwt.regexp.shared.RegExp;
 
 
 /**
@@ -18,22 +16,18 @@ import com.google.gwt.regexp.shared.RegExp;
 
 public class GYearMonthValue extends GDateValue {
 
-    private static RegExp regex =
-            RegExp.compile("(-?[0-9]+-[0-9][0-9])(Z|[+-][0-9][0-9]:[0-9][0-9])?");
-
     private GYearMonthValue(){}
 
     public static ConversionResult makeGYearMonthValue(CharSequence value) {
-        MatchResult m = regex.exec(Whitespace.trimWhitespace(value).toString());
-        if (m == null) {
+        CalendarScanner in = new CalendarScanner(value);
+        int year = in.readYear();
+        int month = (year == CalendarScanner.BAD_YEAR || !in.skip('-') ? -1 : in.readDigits(2));
+        if (month < 0) {
             return new ValidationFailure("Cannot convert '" + value + "' to a gYearMonth");
         }
         GYearMonthValue g = new GYearMonthValue();
-        String base = m.getGroup(1);
-        String tz = m.getGroup(2);
-        String date = (base==null ? "" : base) + "-01" + (tz==null ? "" : tz);
         g.typeLabel = BuiltInAtomicType.G_YEAR_MONTH;
-        return setLexicalValue(g, date);
+        return setComponents(g, year, month, 1, in, value);
     }
 
     public GYearMonthValue(int year, int month, int tz) {
@@ -7,8 +7,6 @@ import client.net.sf.saxon.ce.type.AtomicType;
 import client.net.sf.saxon.ce.type.BuiltInAtomicType;
 import client.net.sf.saxon.ce.type.ConversionResult;
 import client.net.sf.saxon.ce.type.ValidationFailure;
-import com.google.gwt.regexp.shared.MatchResult;
-import com.google.gwt.regexp.shared.RegExp;
 
 
 /**
@@ -17,22 +15,17 @@ import com.google.gwt.regexp.shared.RegExp;
 
 public class GYearValue extends GDateValue {
 
-    private static RegExp regex =
-            RegExp.compile("(-?[0-9]+)(Z|[+-][0-9][0-9]:[0-9][0-9])?");
-
     private GYearValue(){}
 
     public static ConversionResult makeGYearValue(CharSequence value) {
-        GYearValue g = new GYearValue();
-        MatchResult m = regex.exec(Whitespace.trimWhitespace(value).toString());
-        if (m == null) {
+        CalendarScanner in = new CalendarScanner(value);
+        int year = in.readYear();
+        if (year == CalendarScanner.BAD_YEAR) {
             return new ValidationFailure("Cannot convert '" + value + "' to a gYear");
         }
-        String base = m.getGroup(1);
-        String tz = m.getGroup(2);
-        String date = (base==null ? "" : base) + "-01-01" + (tz==null ? "" : tz);
+        GYearValue g = new GYearValue();
         g.typeLabel = BuiltInAtomicType.G_YEAR;
-        return setLexicalValue(g, date);
+        return setComponents(g, year, 1, 1, in, value);
     }
 
     public GYearValue(int year, int tz) {
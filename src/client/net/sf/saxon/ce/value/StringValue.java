@@ -27,6 +27,7 @@ public class StringValue extends AtomicValue {
 
     protected CharSequence value;     // may be zero-length, will never be null
     protected boolean noSurrogates = false;
+    private int codepointLength = -1; // length in codepoints, or -1 if not yet known
 
     /**
      * Protected constructor for use by subtypes
@@ -213,10 +214,14 @@ public class StringValue extends AtomicValue {
     public int getStringLength() {
         if (noSurrogates) {
             return value.length();
+        } else if (codepointLength >= 0) {
+            return codepointLength;
         } else {
             int len = getStringLength(value);
             if (len == value.length()) {
                 noSurrogates = true;
+            } else {
+                codepointLength = len;
             }
             return len;
         }
@@ -274,7 +279,21 @@ public class StringValue extends AtomicValue {
      */
 
     public int[] expand() {
-        return expand(value);
+        if (noSurrogates) {
+            int len = value.length();
+            int[] array = new int[len];
+            for (int i = 0; i < len; i++) {
+                array[i] = value.charAt(i);
+            }
+            return array;
+        }
+        int[] array = expand(value);
+        if (array.length == value.length()) {
+            noSurrogates = true;
+        } else {
+            codepointLength = array.length;
+        }
+        return array;
     }
 
                          
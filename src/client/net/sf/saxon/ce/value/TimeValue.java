@@ -11,8 +11,6 @@ import client.net.sf.saxon.ce.tree.util.FastStringBuffer;
 import client.net.sf.saxon.ce.type.BuiltInAtomicType;
 import client.net.sf.saxon.ce.type.ConversionResult;
 import client.net.sf.saxon.ce.type.ValidationFailure;
-import com.google.gwt.regexp.shared.MatchResult;
-import com.google.gwt.regexp.shared.RegExp;
 
 import java.math.BigDecimal;
 
@@ -62,34 +60,27 @@ public final class TimeValue extends CalendarValue implements Comparable {
      *         if the supplied value was invalid
      */
 
-    private static RegExp timePattern =
-            RegExp.compile("([0-9][0-9]):([0-9][0-9]):([0-9][0-9])(\\.[0-9]*)?([-+Z].*)?");
-
     public static ConversionResult makeTimeValue(CharSequence s) {
-        String str = s.toString();
-        MatchResult match = timePattern.exec(str);
-        if (match == null) {
-            return badTime("wrong format", str);
-        }
+        CalendarScanner in = new CalendarScanner(s);
         TimeValue dt = new TimeValue();
-        dt.hour = DurationValue.simpleInteger(match.getGroup(1));
-        dt.minute = DurationValue.simpleInteger(match.getGroup(2));
-        dt.second = DurationValue.simpleInteger(match.getGroup(3));
-        String frac = match.getGroup(4);
-        if (frac != null && frac.length() > 0) {
-            double fractionalSeconds = Double.parseDouble(frac);
-            dt.microsecond = (int)(Math.round(fractionalSeconds * 1000000));
+        if ((dt.hour = in.readDigits(2)) < 0 || !in.skip(':') ||
+                (dt.minute = in.readDigits(2)) < 0 || !in.skip(':') ||
+                (dt.second = in.readDigits(2)) < 0 ||
+                (dt.microsecond = in.readMicroseconds()) < 0) {
+            return badTime("wrong format", s);
+        }
+        if (dt.hour > 24 || dt.minute > 59 || dt.second > 59) {
+            return badTime("time component out of range", s);
         }
-        String tz = match.getGroup(5);
-        int tzmin = parseTimezone(tz);
+        int tzmin = in.readTimezone();
         if (tzmin == BAD_TIMEZONE) {
-            return badTime("Invalid timezone", str);
+            return badTime("Invalid timezone", s);
         }
         dt.setTimezoneInMinutes(tzmin);
         // Adjust midnight to 00:00 on the following day
         if (dt.hour == 24) {
             if (dt.minute != 0 || dt.second != 0 || dt.microsecond != 0) {
-                return badTime("after midnight", str);
+                return badTime("after midnight", s);
             } else {
                 dt.hour = 0;
             }